@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+/**
+ * 基准测试使用的数据库
+ *
+ * @author hank
+ */
+public enum Backend {
+    /**
+     * 进程内JDBC桩，只衡量代理自身的开销
+     */
+    STUB,
+    /**
+     * 内存中的H2数据库(MySQL兼容模式)
+     */
+    H2;
+
+    /**
+     * @param columns 桩数据源的查询结果列名
+     * @param rows    桩数据源的查询结果
+     * @return 数据源
+     */
+    Supplier<DataSource> dataSource(String[] columns, Object[][] rows) {
+        if (this == STUB) {
+            DataSource dataSource = StubDataSource.create(columns, rows);
+            return () -> dataSource;
+        }
+        DataSource dataSource = H2DataSource.create();
+        return () -> dataSource;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import org.slingerxv.recorder.Col;
+import org.slingerxv.recorder.RollType;
+import org.slingerxv.recorder.SQLType;
+import org.slingerxv.recorder.TimeBasedLog;
+
+/**
+ * 基准测试使用的日志
+ *
+ * @author hank
+ */
+public class BenchLog extends TimeBasedLog {
+    @Col(type = SQLType.BIGINT, comment = "user id")
+    public long userId;
+    @Col(type = SQLType.VARCHAR, size = 64, comment = "user name")
+    public String name;
+    @Col(comment = "level")
+    public int level;
+    @Col(type = SQLType.VARCHAR, size = 255, comment = "detail")
+    public String detail;
+
+    @Override
+    public RollType rollType() {
+        return RollType.DAY_ROLL;
+    }
+
+    static BenchLog create(long i) {
+        BenchLog log = new BenchLog();
+        log.userId = 10000 + i;
+        log.name = "user" + (i & 1023);
+        log.level = (int) (i % 100);
+        log.detail = "buy item " + (i & 63) + " with gold";
+        return log;
+    }
+}
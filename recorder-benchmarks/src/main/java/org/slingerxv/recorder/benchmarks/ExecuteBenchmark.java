@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slingerxv.recorder.InsertMode;
+import org.slingerxv.recorder.OverloadPolicy;
+import org.slingerxv.recorder.RecorderProxy;
+
+/**
+ * 端到端写入吞吐：调用线程执行execute，写入线程批量写入数据库
+ * <p>
+ * 入口满时阻塞调用线程(BLOCK策略)，因此测得的是写入线程能持续消化的速度。
+ * 每轮结束时输出写入和丢失的数量
+ *
+ * @author hank
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ExecuteBenchmark {
+
+    @Param({"STUB", "H2"})
+    public Backend backend;
+
+    @Param({"LITERAL", "PREPARED"})
+    public InsertMode insertMode;
+
+    private RecorderProxy proxy;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        proxy = new RecorderProxy.RecorderProxyBuilder().dataSource(backend.dataSource(new String[0], new Object[0][]))
+                .insertMode(insertMode).overloadPolicy(OverloadPolicy.BLOCK).overloadBlockMillis(1000)
+                .tablePreCreateLeadMillis(0).jmxName(null).build().startServer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        proxy.stopServer();
+        System.out.println("done:" + proxy.getDoneLogNum() + ",lost:" + proxy.getLostLogNum());
+    }
+
+    @State(Scope.Thread)
+    public static class Sequence {
+        long value;
+    }
+
+    @Benchmark
+    public void execute(Sequence sequence, Blackhole blackhole) throws Exception {
+        blackhole.consume(proxy.execute(BenchLog.create(sequence.value++)));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * 内存中的H2数据库(MySQL兼容模式)
+ * <p>
+ * H2不接受MySQL建表语句中"primary key not null auto_increment"的列约束顺序，
+ * 这里只改写建表语句，插入和查询语句原样执行
+ *
+ * @author hank
+ */
+final class H2DataSource {
+    private static final Pattern PRIMARY_KEY = Pattern.compile("primary key not null auto_increment",
+            Pattern.CASE_INSENSITIVE);
+    private static final String H2_PRIMARY_KEY = "not null auto_increment primary key";
+
+    private H2DataSource() {
+    }
+
+    static DataSource create() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:recorder" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        return wrap(DataSource.class, h2);
+    }
+
+    private static <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(H2DataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (args != null && args.length > 0 && args[0] instanceof String) {
+                        args[0] = PRIMARY_KEY.matcher((String) args[0]).replaceFirst(H2_PRIMARY_KEY);
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Connection && method.getReturnType() == Connection.class) {
+                        return wrap(Connection.class, (Connection) result);
+                    }
+                    if (result instanceof Statement && method.getReturnType() == Statement.class) {
+                        return wrap(Statement.class, (Statement) result);
+                    }
+                    return result;
+                }));
+    }
+}
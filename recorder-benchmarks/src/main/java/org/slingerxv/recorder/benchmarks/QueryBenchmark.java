@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slingerxv.recorder.RecorderProxy;
+import org.slingerxv.recorder.RecorderQueryBuilder;
+import org.slingerxv.recorder.RecorderUtil;
+
+/**
+ * 查询结果映射为日志对象(RecorderProxy.query)
+ *
+ * @author hank
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+    private static final String[] COLUMNS = {"pk_id", "createTime", "userId", "name", "level", "detail"};
+
+    @Param({"STUB", "H2"})
+    public Backend backend;
+
+    @Param({"1000"})
+    public int rows;
+
+    private RecorderProxy proxy;
+    private RecorderQueryBuilder builder;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        long now = System.currentTimeMillis();
+        Object[][] data = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            BenchLog log = BenchLog.create(i);
+            data[i] = new Object[]{i + 1, now, log.userId, log.name, log.level, log.detail};
+        }
+        proxy = new RecorderProxy.RecorderProxyBuilder().dataSource(backend.dataSource(COLUMNS, data))
+                .tablePreCreateLeadMillis(0).jmxName(null).build().startServer();
+        String tableName = RecorderUtil.getLogTableName(BenchLog.create(0), now);
+        if (backend == Backend.H2) {
+            List<BenchLog> logs = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                logs.add(BenchLog.create(i));
+            }
+            proxy.executeAll(logs).get(1, TimeUnit.MINUTES);
+        }
+        builder = new RecorderQueryBuilder().select("*").tables(tableName);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        proxy.stopServer();
+    }
+
+    @Benchmark
+    public List<BenchLog> query() throws Exception {
+        return proxy.query(BenchLog.class, builder);
+    }
+}
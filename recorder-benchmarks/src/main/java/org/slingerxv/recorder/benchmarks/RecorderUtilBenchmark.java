@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slingerxv.recorder.RecorderQueryBuilder;
+import org.slingerxv.recorder.RecorderUtil;
+
+/**
+ * RecorderUtil中写入和查询路径上的SQL和表名计算
+ *
+ * @author hank
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecorderUtilBenchmark {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"1", "100"})
+    public int rows;
+
+    private BenchLog log;
+    private List<BenchLog> logs;
+    private String tableName;
+    private long now;
+
+    @Setup
+    public void setup() {
+        now = System.currentTimeMillis();
+        log = BenchLog.create(1);
+        logs = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            logs.add(BenchLog.create(i));
+        }
+        tableName = RecorderUtil.getLogTableName(log, now);
+    }
+
+    @Benchmark
+    public String getLogTableName() {
+        return RecorderUtil.getLogTableName(log, now);
+    }
+
+    @Benchmark
+    public String buildInsertTableSql() throws Exception {
+        return RecorderUtil.buildInsertTableSqlMYSQL(tableName, logs);
+    }
+
+    @Benchmark
+    public String buildCreateTableSql() throws Exception {
+        return RecorderUtil.buildCreateTableSqlMYSQL(tableName, BenchLog.class, "myisam", "utf8");
+    }
+
+    @Benchmark
+    public Set<String> getRelativeTableNames() throws Exception {
+        return RecorderUtil.getRelativeTableNames(BenchLog.class, now - 30 * DAY_MILLIS, now);
+    }
+
+    @Benchmark
+    public String buildQuery() throws Exception {
+        return new RecorderQueryBuilder().select("*").tables(tableName)
+                .where(new RecorderQueryBuilder.WhereConditionBuilder().gt("createTime", now - DAY_MILLIS, true).and()
+                        .eq("level", 3).and().like("name", "user1", false, true))
+                .orderBy("createTime", true).limit(0, 100).build();
+    }
+}
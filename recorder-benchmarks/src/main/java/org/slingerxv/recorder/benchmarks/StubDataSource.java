@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+/**
+ * 进程内的JDBC桩：插入直接返回行数，查询返回固定的结果集，用于排除数据库本身的开销
+ *
+ * @author hank
+ */
+final class StubDataSource {
+    private static final ClassLoader LOADER = StubDataSource.class.getClassLoader();
+
+    private StubDataSource() {
+    }
+
+    /**
+     * @param columns 查询结果的列名
+     * @param rows    查询结果
+     * @return 数据源
+     */
+    static DataSource create(String[] columns, Object[][] rows) {
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement((String) args[0], columns, rows);
+                case "createStatement":
+                    return statement(null, columns, rows);
+                case "getMetaData":
+                    return proxy(DatabaseMetaData.class, (metaData, m, a) -> emptyResultSet());
+                case "isValid":
+                    return true;
+                case "isClosed":
+                    return false;
+                default:
+                    return defaultValue(method);
+            }
+        });
+        return proxy(DataSource.class,
+                (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection : defaultValue(method));
+    }
+
+    private static PreparedStatement statement(String sql, String[] columns, Object[][] rows) {
+        int[] batch = {0};
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "executeUpdate":
+                    return countRows(args == null ? sql : (String) args[0]);
+                case "addBatch":
+                    batch[0]++;
+                    return null;
+                case "executeBatch":
+                    int[] results = new int[batch[0]];
+                    Arrays.fill(results, 1);
+                    batch[0] = 0;
+                    return results;
+                case "executeQuery":
+                    return resultSet(columns, rows);
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private static int countRows(String sql) {
+        if (sql == null || !sql.startsWith("insert")) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = sql.indexOf("),("); i >= 0; i = sql.indexOf("),(", i + 3)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static ResultSet emptyResultSet() {
+        return resultSet(new String[0], new Object[0][]);
+    }
+
+    private static ResultSet resultSet(String[] columns, Object[][] rows) {
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return columns.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return columns[(Integer) args[0] - 1];
+                default:
+                    return defaultValue(method);
+            }
+        });
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++cursor[0] < rows.length;
+                case "findColumn":
+                    for (int i = 0; i < columns.length; i++) {
+                        if (columns[i].equalsIgnoreCase((String) args[0])) {
+                            return i + 1;
+                        }
+                    }
+                    throw new SQLException("column not found:" + args[0]);
+                case "getMetaData":
+                    return metaData;
+                case "wasNull":
+                    return wasNull[0];
+                default:
+                    if (name.startsWith("get") && args != null && args.length == 1) {
+                        Object value = args[0] instanceof Integer ? rows[cursor[0]][(Integer) args[0] - 1]
+                                : rows[cursor[0]][indexOf(columns, (String) args[0])];
+                        wasNull[0] = value == null;
+                        return convert(value, method.getReturnType());
+                    }
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(column);
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (type == String.class) {
+            return value == null ? null : value.toString();
+        }
+        if (type == long.class) {
+            return value == null ? 0L : ((Number) value).longValue();
+        }
+        if (type == int.class) {
+            return value == null ? 0 : ((Number) value).intValue();
+        }
+        if (type == double.class) {
+            return value == null ? 0D : ((Number) value).doubleValue();
+        }
+        if (type == boolean.class) {
+            return value != null && (Boolean) value;
+        }
+        return value;
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(LOADER, new Class<?>[]{type}, handler);
+    }
+}
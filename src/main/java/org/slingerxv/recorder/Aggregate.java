@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 累加型日志的预聚合
+ * <p>
+ * 同一时间窗口内键字段相同(且目标表相同)的日志合并为一行，累加字段求和，其他字段取窗口内第一条日志的值，
+ * 时间日志的createTime为窗口开始时间。窗口结束时只写入合并后的行
+ * 
+ * @author hank
+ *
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Aggregate {
+
+	/**
+	 * 键字段(列名)，为空时窗口内同一张表的日志全部合并
+	 * 
+	 * @return
+	 */
+	String[] keys() default {};
+
+	/**
+	 * 累加字段(long、int或double类型的列)
+	 * 
+	 * @return
+	 */
+	String[] sums();
+
+	/**
+	 * 窗口长度(毫秒)
+	 * 
+	 * @return
+	 */
+	long windowMillis() default 60000;
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 自适应批次控制
+ * <p>
+ * 写入线程每写完一批日志上报一次：批次中最早日志从入队到写完的时间、插入耗时和剩余队列长度。
+ * 每个调整周期按上报时间的p99调整批次大小和等待时间：
+ * 有积压时不再等待并放大批次(受插入耗时预算限制)；超过目标延迟时先缩短等待再缩小批次；
+ * 远低于目标延迟时逐步加长等待、放大批次，以更少的往返写入同样多的日志。
+ * 配置的batchSize和maxLingerMillis为上限，未设置目标延迟时不统计也不调整
+ *
+ * @author hank
+ */
+final class BatchController {
+    // 调整周期
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // 等待时间低于此值时直接取0
+    private static final long MIN_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // 每个周期最多保留的样本数量
+    private static final int MAX_SAMPLES = 256;
+    private final int maxBatchSize;
+    private final int minBatchSize;
+    private final long maxLingerNanos;
+    private final long targetNanos;
+    private final LongSupplier nanoClock;
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int sampleCount;
+    private int sampleIndex;
+    private long lastAdjustNanos;
+    // 每行插入耗时(纳秒，指数移动平均)
+    private double rowInsertNanos;
+    private volatile int batchSize;
+    private volatile long lingerNanos;
+    private volatile long latencyP99Nanos;
+
+    /**
+     * @param maxBatchSize    批次上限
+     * @param maxLingerMillis 等待时间上限(毫秒)
+     * @param targetMillis    目标p99延迟(毫秒，0为不调整)
+     */
+    BatchController(int maxBatchSize, long maxLingerMillis, long targetMillis) {
+        this(maxBatchSize, maxLingerMillis, targetMillis, System::nanoTime);
+    }
+
+    /**
+     * @param maxBatchSize    批次上限
+     * @param maxLingerMillis 等待时间上限(毫秒)
+     * @param targetMillis    目标p99延迟(毫秒，0为不调整)
+     * @param nanoClock       纳秒时钟
+     */
+    BatchController(int maxBatchSize, long maxLingerMillis, long targetMillis, LongSupplier nanoClock) {
+        this.maxBatchSize = maxBatchSize;
+        this.minBatchSize = Math.max(1, maxBatchSize / 16);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.batchSize = maxBatchSize;
+        this.lingerNanos = maxLingerNanos;
+        this.nanoClock = nanoClock;
+        this.lastAdjustNanos = nanoClock.getAsLong();
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    long getLingerNanos() {
+        return lingerNanos;
+    }
+
+    long getLatencyP99Nanos() {
+        return latencyP99Nanos;
+    }
+
+    boolean isAdaptive() {
+        return targetNanos > 0;
+    }
+
+    /**
+     * 上报一批日志的写入情况
+     *
+     * @param size         日志数量
+     * @param latencyNanos 批次中最早日志从入队到写完的时间
+     * @param insertNanos  插入耗时
+     * @param queueDepth   剩余队列长度
+     */
+    void record(int size, long latencyNanos, long insertNanos, int queueDepth) {
+        // 不调整时批次大小和等待时间固定，写入线程之间无需争用
+        if (targetNanos <= 0 || size <= 0) {
+            return;
+        }
+        synchronized (this) {
+            sample(size, latencyNanos, insertNanos, queueDepth);
+        }
+    }
+
+    private void sample(int size, long latencyNanos, long insertNanos, int queueDepth) {
+        double perRow = (double) insertNanos / size;
+        rowInsertNanos = rowInsertNanos == 0 ? perRow : rowInsertNanos * 0.8 + perRow * 0.2;
+        if (sampleCount < MAX_SAMPLES) {
+            samples[sampleCount++] = latencyNanos;
+        } else {
+            // 样本已满时轮流覆盖
+            samples[sampleIndex++ & (MAX_SAMPLES - 1)] = latencyNanos;
+        }
+        long now = nanoClock.getAsLong();
+        if (now - lastAdjustNanos < ADJUST_INTERVAL_NANOS) {
+            return;
+        }
+        lastAdjustNanos = now;
+        Arrays.sort(samples, 0, sampleCount);
+        long p99 = samples[Math.min(sampleCount - 1, (int) (sampleCount * 0.99))];
+        sampleCount = 0;
+        latencyP99Nanos = p99;
+        adjust(p99, queueDepth);
+    }
+
+    private void adjust(long p99, int queueDepth) {
+        int size = batchSize;
+        long linger = lingerNanos;
+        // 单批插入耗时不超过目标延迟的一半
+        int budgetSize = rowInsertNanos > 0 ? (int) Math.min(maxBatchSize, targetNanos / 2 / rowInsertNanos)
+                : maxBatchSize;
+        if (queueDepth >= size) {
+            // 有积压：批次立即可满，不再等待
+            linger = 0;
+            size = Math.min(size * 2, budgetSize);
+        } else if (p99 > targetNanos) {
+            linger /= 2;
+            if (linger < MIN_LINGER_NANOS) {
+                linger = 0;
+                size = size * 3 / 4;
+            }
+        } else if (p99 < targetNanos / 2) {
+            linger = Math.min(Math.min(maxLingerNanos, targetNanos / 4), Math.max(MIN_LINGER_NANOS, linger * 2));
+            size = Math.min(size + Math.max(1, size / 8), budgetSize);
+        }
+        batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, size));
+        lingerNanos = Math.max(0, linger);
+    }
+}
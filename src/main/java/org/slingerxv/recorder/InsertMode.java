@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志插入方式
+ * 
+ * @author hank
+ *
+ */
+public enum InsertMode {
+	/**
+	 * 将字段值直接拼接到多行INSERT语句中，文本按MySQL字符串字面量规则转义
+	 */
+	LITERAL,
+	/**
+	 * 每张表使用同一条带占位符的INSERT模板，按列类型绑定参数后批量执行
+	 */
+	PREPARED,
+	/**
+	 * 将日志编码为制表符分隔的字节流，通过LOAD DATA LOCAL INFILE写入，驱动不支持时退回PREPARED
+	 */
+	LOAD_DATA;
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.function.IntFunction;
+
+/**
+ * 按表分道的日志入口
+ * <p>
+ * 每张表按表名哈希固定落在一条分道上，每条分道只由一个写入线程消费，
+ * 因此同一张表的日志按提交顺序写入，不同表的写入分散在各个线程上，不会争抢同一张表的表锁
+ *
+ * @author hank
+ */
+final class LaneIntake implements RecorderIntake {
+    private final RecorderIntake[] lanes;
+
+    /**
+     * @param laneNum  分道数量
+     * @param capacity 总容量
+     * @param factory  按单条分道容量创建分道入口
+     */
+    LaneIntake(int laneNum, int capacity, IntFunction<RecorderIntake> factory) {
+        if (laneNum < 1) {
+            throw new IllegalArgumentException("laneNum:" + laneNum);
+        }
+        int laneCapacity = Math.max(1, (capacity + laneNum - 1) / laneNum);
+        this.lanes = new RecorderIntake[laneNum];
+        for (int i = 0; i < laneNum; i++) {
+            lanes[i] = factory.apply(laneCapacity);
+        }
+    }
+
+    /**
+     * 分道数量
+     *
+     * @return 数量
+     */
+    int getLaneNum() {
+        return lanes.length;
+    }
+
+    /**
+     * 获取分道
+     *
+     * @param index 序号
+     * @return 分道入口
+     */
+    RecorderIntake lane(int index) {
+        return lanes[index];
+    }
+
+    private RecorderIntake route(String tableName) {
+        return lanes[Math.floorMod(tableName.hashCode(), lanes.length)];
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack) {
+        return route(tableName).offer(record, tableName, ack);
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack, long timeoutNanos)
+            throws InterruptedException {
+        return route(tableName).offer(record, tableName, ack, timeoutNanos);
+    }
+
+    @Override
+    public RecorderEvent dropOldest(String tableName) {
+        return route(tableName).dropOldest(tableName);
+    }
+
+    /**
+     * 依次从各条分道取出日志，不等待(仅用于停止时在当前线程收尾)
+     */
+    @Override
+    public int drainTo(RecorderEvent[] events, int offset, int max, long timeoutNanos) throws InterruptedException {
+        int count = 0;
+        for (int i = 0; i < lanes.length && count < max; i++) {
+            count += lanes[i].drainTo(events, offset + count, max - count, 0);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (RecorderIntake lane : lanes) {
+            size += lane.size();
+        }
+        return size;
+    }
+}
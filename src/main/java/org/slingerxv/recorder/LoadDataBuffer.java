@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * LOAD DATA使用的可复用字节缓冲
+ * <p>
+ * 按MySQL默认格式编码：字段以制表符分隔，行以换行结尾，反斜杠转义，null写为\N，字符使用UTF-8
+ *
+ * @author hank
+ */
+final class LoadDataBuffer {
+    private static final byte[] LONG_MIN = Long.toString(Long.MIN_VALUE).getBytes();
+    private byte[] bytes;
+    private int size;
+
+    LoadDataBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * 清空内容，保留已分配的空间
+     */
+    void reset() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 以当前内容创建输入流
+     *
+     * @return 输入流
+     */
+    InputStream toInputStream() {
+        return new ByteArrayInputStream(bytes, 0, size);
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    void fieldEnd() {
+        write('\t');
+    }
+
+    void lineEnd() {
+        write('\n');
+    }
+
+    void writeNull() {
+        ensure(2);
+        bytes[size++] = '\\';
+        bytes[size++] = 'N';
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            ensure(LONG_MIN.length);
+            System.arraycopy(LONG_MIN, 0, bytes, size, LONG_MIN.length);
+            size += LONG_MIN.length;
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+        int start = size;
+        do {
+            bytes[size++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // 反转数字
+        for (int i = start, j = size - 1; i < j; i++, j--) {
+            byte b = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = b;
+        }
+    }
+
+    /**
+     * 写入文本，转义分隔符并编码为UTF-8
+     *
+     * @param value 文本
+     */
+    void writeText(CharSequence value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        int length = value.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '\\':
+                        writeEscape('\\');
+                        break;
+                    case '\t':
+                        writeEscape('t');
+                        break;
+                    case '\n':
+                        writeEscape('n');
+                        break;
+                    case '\r':
+                        writeEscape('r');
+                        break;
+                    case '\0':
+                        writeEscape('0');
+                        break;
+                    default:
+                        write(c);
+                        break;
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                bytes[size++] = (byte) (0xc0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensure(4);
+                bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符
+                write('?');
+            } else {
+                ensure(3);
+                bytes[size++] = (byte) (0xe0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[size++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void writeEscape(char c) {
+        ensure(2);
+        bytes[size++] = '\\';
+        bytes[size++] = (byte) c;
+    }
+
+    private void write(int b) {
+        ensure(1);
+        bytes[size++] = (byte) b;
+    }
+
+    private void ensure(int length) {
+        if (size + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + length));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志入口已满时的处理策略
+ * 
+ * @author hank
+ *
+ */
+public enum OverloadPolicy {
+	/**
+	 * 丢弃并抛出{@link RecorderTaskOverloadException}
+	 */
+	REJECT,
+	/**
+	 * 阻塞等待空位，超时后抛出{@link RecorderTaskOverloadException}
+	 */
+	BLOCK,
+	/**
+	 * 静默丢弃新日志
+	 */
+	DROP_NEWEST,
+	/**
+	 * 丢弃队列中最旧的日志，放入新日志
+	 */
+	DROP_OLDEST,
+	/**
+	 * 交给{@link RecorderSpillStore}暂存，暂存失败时抛出{@link RecorderTaskOverloadException}
+	 */
+	SPILL;
+}
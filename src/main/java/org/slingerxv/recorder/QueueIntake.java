@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于有界阻塞队列的日志入口
+ *
+ * @author hank
+ */
+final class QueueIntake implements RecorderIntake {
+    private final BlockingQueue<RecorderEvent> queue;
+
+    QueueIntake(int capacity) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack) {
+        return queue.offer(new RecorderEvent(record, tableName, ack));
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack, long timeoutNanos)
+            throws InterruptedException {
+        return queue.offer(new RecorderEvent(record, tableName, ack), timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public RecorderEvent dropOldest(String tableName) {
+        RecorderEvent event = queue.poll();
+        if (event != null) {
+            event.drop();
+        }
+        return event;
+    }
+
+    @Override
+    public int drainTo(RecorderEvent[] events, int offset, int max, long timeoutNanos) throws InterruptedException {
+        RecorderEvent event = queue.poll();
+        if (event == null) {
+            if (timeoutNanos <= 0 || (event = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS)) == null) {
+                return 0;
+            }
+        }
+        int count = 0;
+        do {
+            events[offset + count++].copy(event);
+        } while (count < max && (event = queue.poll()) != null);
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+}
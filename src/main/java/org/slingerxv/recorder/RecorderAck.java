@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组日志的写入确认，组内日志全部写入后完成，任一日志失败即以异常完成
+ *
+ * @author hank
+ */
+final class RecorderAck {
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final AtomicInteger remaining;
+
+    RecorderAck(int count) {
+        this.remaining = new AtomicInteger(count);
+        if (count <= 0) {
+            future.complete(null);
+        }
+    }
+
+    CompletableFuture<Void> getFuture() {
+        return future;
+    }
+
+    /**
+     * 确认count条日志已写入
+     *
+     * @param count 数量
+     */
+    void success(int count) {
+        if (remaining.addAndGet(-count) <= 0) {
+            future.complete(null);
+        }
+    }
+
+    /**
+     * 日志写入失败
+     *
+     * @param e 原因
+     */
+    void fail(Throwable e) {
+        future.completeExceptionally(e);
+    }
+}
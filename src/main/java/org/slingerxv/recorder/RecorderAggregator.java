@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一个日志类的预聚合(见{@link Aggregate})
+ * <p>
+ * 入队前把日志合并到当前窗口中键相同的行，窗口结束时由聚合线程把合并后的行放入入口。
+ * 合并时持有读锁，切换窗口时持有写锁，保证切换后不会再有日志合并到已放入入口的行
+ *
+ * @author hank
+ */
+final class RecorderAggregator {
+    private static Logger log = LoggerFactory.getLogger(RecorderAggregator.class);
+    private final Class<? extends IRecorder> clss;
+    private final long windowMillis;
+    private final RecorderBinder.Column[] keys;
+    private final RecorderBinder.Column[] sums;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<List<Object>, Row> rows = new ConcurrentHashMap<>();
+
+    private RecorderAggregator(Class<? extends IRecorder> clss, Aggregate aggregate) {
+        this.clss = clss;
+        this.windowMillis = aggregate.windowMillis();
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("windowMillis must be positive:" + clss.getName());
+        }
+        RecorderBinder binder = RecorderBinder.of(clss);
+        this.keys = columns(binder, aggregate.keys(), false);
+        this.sums = columns(binder, aggregate.sums(), true);
+    }
+
+    /**
+     * @param clss 日志类
+     * @return 没有{@link Aggregate}注解时返回空
+     */
+    static RecorderAggregator of(Class<? extends IRecorder> clss) {
+        Aggregate aggregate = clss.getAnnotation(Aggregate.class);
+        return aggregate == null ? null : new RecorderAggregator(clss, aggregate);
+    }
+
+    private RecorderBinder.Column[] columns(RecorderBinder binder, String[] names, boolean additive) {
+        RecorderBinder.Column[] columns = new RecorderBinder.Column[names.length];
+        for (int i = 0; i < names.length; i++) {
+            RecorderBinder.Column column = binder.getColumn(names[i]);
+            if (column == null || (additive && !column.isAdditive())) {
+                throw new IllegalArgumentException((additive ? "invalid sum field:" : "invalid key field:") + names[i]
+                        + "," + clss.getName());
+            }
+            columns[i] = column;
+        }
+        return columns;
+    }
+
+    long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * 合并一条日志
+     *
+     * @param alog      日志
+     * @param tableName 目标表名
+     * @param ack       写入确认(可为空)，合并后的行写入后完成
+     * @return 是否合并到了已有的行(此时日志实例不再使用)
+     */
+    boolean fold(IRecorder alog, String tableName, RecorderAck ack) {
+        Object[] key = new Object[keys.length + 1];
+        key[0] = tableName;
+        for (int i = 0; i < keys.length; i++) {
+            key[i + 1] = keys[i].get(alog);
+        }
+        List<Object> rowKey = Arrays.asList(key);
+        lock.readLock().lock();
+        try {
+            Row row = rows.get(rowKey);
+            if (row == null) {
+                Row created = new Row(alog, tableName);
+                row = rows.putIfAbsent(rowKey, created);
+                if (row == null) {
+                    if (alog instanceof TimeBasedLog) {
+                        TimeBasedLog timeBasedLog = (TimeBasedLog) alog;
+                        timeBasedLog.createTime -= Math.floorMod(timeBasedLog.createTime, windowMillis);
+                    }
+                    created.add(null, ack);
+                    return false;
+                }
+            }
+            row.add(alog, ack);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 结束当前窗口
+     *
+     * @return 合并后的行
+     */
+    List<Row> drain() {
+        Map<List<Object>, Row> window;
+        lock.writeLock().lock();
+        try {
+            if (rows.isEmpty()) {
+                return new ArrayList<>(0);
+            }
+            window = rows;
+            rows = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("aggregate window closed:" + clss.getName() + ",rows:" + window.size());
+        }
+        return new ArrayList<>(window.values());
+    }
+
+    /**
+     * 窗口内合并后的一行
+     */
+    final class Row {
+        final IRecorder record;
+        final String tableName;
+        private List<RecorderAck> acks;
+        // 合并到该行的日志数(包括创建该行的日志)
+        private int count;
+
+        Row(IRecorder record, String tableName) {
+            this.record = record;
+            this.tableName = tableName;
+        }
+
+        synchronized void add(IRecorder alog, RecorderAck ack) {
+            count++;
+            if (alog != null) {
+                for (RecorderBinder.Column sum : sums) {
+                    sum.add(alog, record);
+                }
+            }
+            if (ack != null) {
+                if (acks == null) {
+                    acks = new ArrayList<>(1);
+                }
+                acks.add(ack);
+            }
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        /**
+         * 合并后的行写入后完成所有被合并日志的确认
+         *
+         * @return 没有需要确认的日志时返回空
+         */
+        synchronized RecorderAck ack() {
+            if (acks == null) {
+                return null;
+            }
+            if (acks.size() == 1) {
+                return acks.get(0);
+            }
+            List<RecorderAck> merged = acks;
+            RecorderAck ack = new RecorderAck(1);
+            ack.getFuture().whenComplete((ignore, e) -> {
+                for (RecorderAck each : merged) {
+                    if (e == null) {
+                        each.success(1);
+                    } else {
+                        each.fail(e);
+                    }
+                }
+            });
+            return ack;
+        }
+    }
+}
@@ -0,0 +1,1016 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 日志类的字段绑定器(每个日志类编译一次)
+ * <p>
+ * 通过MethodHandle按字段的原始类型读写，避免Field.get/Field.set的装箱和每行的注解查找；无法生成时回退到反射
+ *
+ * @author hank
+ */
+final class RecorderBinder {
+    private static Logger log = LoggerFactory.getLogger(RecorderBinder.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    // 每个日志类缓存的读取计划数量上限
+    private static final int MAX_PLANS = 64;
+    private static Map<Class<? extends IRecorder>, RecorderBinder> binderCache = new ConcurrentHashMap<>();
+    private final Class<? extends IRecorder> clss;
+    private final Column[] columns;
+    private final MethodHandle constructor;
+    // 结果集列名 -> 各列在结果集中的位置(0为结果集中没有)
+    private final Map<String, int[]> plans = new ConcurrentHashMap<>();
+    // 字段结构摘要(字段名和类型)，用于校验暂存数据与当前类是否一致
+    private final int schemaHash;
+    // 各列为默认值的实例(重置回收的实例时使用)
+    private volatile IRecorder blank;
+
+    private RecorderBinder(Class<? extends IRecorder> clss) {
+        this.clss = clss;
+        List<Field> logFields = RecorderUtil.getLogFields(clss);
+        this.columns = new Column[logFields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = compile(logFields.get(i));
+        }
+        MethodHandle handle = null;
+        try {
+            handle = LOOKUP.findConstructor(clss, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(IRecorder.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("no accessible constructor,fall back to reflection:" + clss.getName());
+        }
+        this.constructor = handle;
+        int hash = 1;
+        for (Field field : logFields) {
+            hash = 31 * hash + (field.getName() + ":" + field.getType().getName()).hashCode();
+        }
+        this.schemaHash = hash;
+    }
+
+    /**
+     * 获取日志类的绑定器
+     *
+     * @param clss 日志类
+     * @return 绑定器
+     */
+    static RecorderBinder of(Class<? extends IRecorder> clss) {
+        RecorderBinder binder = binderCache.get(clss);
+        if (binder == null) {
+            binder = new RecorderBinder(clss);
+            binderCache.put(clss, binder);
+        }
+        return binder;
+    }
+
+    Class<? extends IRecorder> getRecorderClass() {
+        return clss;
+    }
+
+    Column[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * 按字段名查找列
+     *
+     * @param name 字段名
+     * @return 没有该列时返回空
+     */
+    Column getColumn(String name) {
+        for (Column column : columns) {
+            if (column.name.equals(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    int getSchemaHash() {
+        return schemaHash;
+    }
+
+    /**
+     * 将一条日志的所有列写入二进制缓冲
+     *
+     * @param buffer 缓冲
+     * @param alog   日志
+     */
+    void encode(ByteBuffer buffer, IRecorder alog) {
+        for (Column column : columns) {
+            column.encode(buffer, alog);
+        }
+    }
+
+    /**
+     * 从二进制缓冲创建日志实例
+     *
+     * @param buffer 缓冲
+     * @return 日志实例
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    IRecorder decode(ByteBuffer buffer) throws InstantiationException, IllegalAccessException {
+        IRecorder newInstance = newInstance();
+        for (Column column : columns) {
+            column.decode(buffer, newInstance);
+        }
+        return newInstance;
+    }
+
+    /**
+     * 把日志的所有列重置为新建实例时的默认值
+     *
+     * @param alog 日志
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    void reset(IRecorder alog) throws InstantiationException, IllegalAccessException {
+        IRecorder template = blank;
+        if (template == null) {
+            template = newInstance();
+            blank = template;
+        }
+        for (Column column : columns) {
+            column.copy(template, alog);
+        }
+    }
+
+    /**
+     * 复制一个日志实例的所有列
+     *
+     * @param source 日志
+     * @return 新的日志实例
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    IRecorder copy(IRecorder source) throws InstantiationException, IllegalAccessException {
+        IRecorder newInstance = newInstance();
+        for (Column column : columns) {
+            column.copy(source, newInstance);
+        }
+        return newInstance;
+    }
+
+    /**
+     * 创建一个新的日志实例
+     *
+     * @return 日志实例
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    IRecorder newInstance() throws InstantiationException, IllegalAccessException {
+        if (constructor == null) {
+            return clss.newInstance();
+        }
+        try {
+            return (IRecorder) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            InstantiationException exception = new InstantiationException(e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    /**
+     * 绑定一条日志的所有列到插入语句
+     *
+     * @param statement 插入语句
+     * @param alog      日志
+     * @throws SQLException
+     */
+    void bind(PreparedStatement statement, IRecorder alog) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].bind(statement, i + 1, alog);
+        }
+    }
+
+    /**
+     * 以('v1','v2',...)的形式追加一条日志的所有列，文本中的引号、反斜杠和控制字符会被转义
+     *
+     * @param sb   缓冲
+     * @param alog 日志
+     */
+    void appendValues(StringBuilder sb, IRecorder alog) {
+        sb.append("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append("'");
+            columns[i].append(sb, alog);
+            sb.append("'");
+        }
+        sb.append(")");
+    }
+
+    /**
+     * 以LOAD DATA格式写入一行
+     *
+     * @param buffer 缓冲
+     * @param alog   日志
+     */
+    void writeRow(LoadDataBuffer buffer, IRecorder alog) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                buffer.fieldEnd();
+            }
+            columns[i].write(buffer, alog);
+        }
+        buffer.lineEnd();
+    }
+
+    /**
+     * 获取结果集的读取计划(各列在结果集中的位置)，按结果集的列名缓存，每个结果集取一次
+     *
+     * @param resultSet 结果集
+     * @return 读取计划
+     * @throws SQLException
+     */
+    int[] plan(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        if (metaData == null) {
+            // 驱动不提供元数据时按列名查找
+            int[] plan = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                plan[i] = resultSet.findColumn(columns[i].name);
+            }
+            return plan;
+        }
+        int columnCount = metaData.getColumnCount();
+        StringBuilder shape = new StringBuilder();
+        for (int i = 1; i <= columnCount; i++) {
+            shape.append(metaData.getColumnLabel(i)).append(',');
+        }
+        String key = shape.toString();
+        int[] plan = plans.get(key);
+        if (plan != null) {
+            return plan;
+        }
+        // 列名不区分大小写，同名时取第一列
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 1; i <= columnCount; i++) {
+            indexes.putIfAbsent(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        plan = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Integer index = indexes.get(columns[i].name.toLowerCase(Locale.ROOT));
+            plan[i] = index == null ? 0 : index;
+        }
+        if (plans.size() < MAX_PLANS) {
+            plans.putIfAbsent(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * 按读取计划从结果集的当前行创建日志实例，结果集中没有的列保持默认值
+     *
+     * @param resultSet 结果集
+     * @param plan      读取计划(见{@link #plan(ResultSet)})
+     * @return 日志实例
+     * @throws SQLException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    IRecorder read(ResultSet resultSet, int[] plan)
+            throws SQLException, InstantiationException, IllegalAccessException {
+        IRecorder newInstance = newInstance();
+        for (int i = 0; i < columns.length; i++) {
+            if (plan[i] > 0) {
+                columns[i].read(resultSet, plan[i], newInstance);
+            }
+        }
+        return newInstance;
+    }
+
+    private static Column compile(Field field) {
+        Col annotation = field.getAnnotation(Col.class);
+        SQLType type = annotation.type();
+        Class<?> fieldType = field.getType();
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            MethodHandle setter = LOOKUP.unreflectSetter(field);
+            if (fieldType == long.class) {
+                return new LongColumn(field, type, getter, setter);
+            } else if (fieldType == int.class) {
+                return new IntColumn(field, type, getter, setter);
+            } else if (fieldType == double.class) {
+                return new DoubleColumn(field, type, getter, setter);
+            } else if (fieldType == boolean.class) {
+                return new BooleanColumn(field, type, getter, setter);
+            } else if (fieldType == String.class) {
+                return new StringColumn(field, type, getter, setter);
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.debug("can not compile field,fall back to reflection:" + field, e);
+        }
+        return new ReflectColumn(field, type);
+    }
+
+    private static SQLException toSQLException(Throwable e) {
+        if (e instanceof SQLException) {
+            return (SQLException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new SQLException(e);
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+
+    /**
+     * 按MySQL字符串字面量的规则转义后追加，null追加为null
+     *
+     * @param sb    缓冲
+     * @param value 文本
+     */
+    private static void appendEscaped(StringBuilder sb, CharSequence value) {
+        if (value == null) {
+            sb.append((String) null);
+            return;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\'':
+                    sb.append("\\'");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\0':
+                    sb.append("\\0");
+                    break;
+                case '\u001a':
+                    sb.append("\\Z");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static boolean isNumeric(SQLType type) {
+        switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case MEDIUMINT:
+            case INT:
+            case INTEGER:
+            case BIGINT:
+            case BIT:
+            case REAL:
+            case DOUBLE:
+            case FLOAT:
+            case DECIMAL:
+            case NUMERIC:
+            case YEAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 日志的一列
+     */
+    abstract static class Column {
+        final Field field;
+        final String name;
+        final SQLType type;
+        final boolean numeric;
+
+        Column(Field field, SQLType type) {
+            this.field = field;
+            this.name = field.getName();
+            this.type = type;
+            this.numeric = isNumeric(type);
+        }
+
+        /**
+         * 绑定到语句参数
+         */
+        abstract void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException;
+
+        /**
+         * 从结果集读取并赋值
+         */
+        abstract void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException;
+
+        /**
+         * 以文本形式追加(用于单引号内，需要转义)
+         */
+        abstract void append(StringBuilder sb, IRecorder alog);
+
+        /**
+         * 以LOAD DATA格式写入
+         */
+        abstract void write(LoadDataBuffer buffer, IRecorder alog);
+
+        /**
+         * 读取字段值(会装箱)
+         */
+        abstract Object get(IRecorder alog);
+
+        /**
+         * 写入二进制缓冲
+         */
+        abstract void encode(ByteBuffer buffer, IRecorder alog);
+
+        /**
+         * 从二进制缓冲读取并赋值
+         */
+        abstract void decode(ByteBuffer buffer, IRecorder alog);
+
+        /**
+         * 把source的字段值赋给target
+         */
+        abstract void copy(IRecorder source, IRecorder target);
+
+        /**
+         * 把source的字段值累加到target(只有数值字段支持)
+         */
+        void add(IRecorder source, IRecorder target) {
+            throw new UnsupportedOperationException("not a numeric field:" + field);
+        }
+
+        /**
+         * 是否支持累加
+         */
+        boolean isAdditive() {
+            return false;
+        }
+    }
+
+    static final class LongColumn extends Column {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        LongColumn(Field field, SQLType type, MethodHandle getter, MethodHandle setter) {
+            super(field, type);
+            this.getter = getter.asType(MethodType.methodType(long.class, IRecorder.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, IRecorder.class, long.class));
+        }
+
+        long getLong(IRecorder alog) {
+            try {
+                return (long) getter.invokeExact(alog);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            long value = getLong(alog);
+            if (numeric) {
+                statement.setLong(index, value);
+            } else {
+                statement.setString(index, Long.toString(value));
+            }
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            long value = resultSet.getLong(index);
+            if (resultSet.wasNull()) {
+                return;
+            }
+            try {
+                setter.invokeExact(alog, value);
+            } catch (Throwable e) {
+                throw toSQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            sb.append(getLong(alog));
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            buffer.writeLong(getLong(alog));
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            return getLong(alog);
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            buffer.putLong(getLong(alog));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            try {
+                setter.invokeExact(alog, buffer.getLong());
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getLong(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void add(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getLong(target) + getLong(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        boolean isAdditive() {
+            return true;
+        }
+    }
+
+    static final class IntColumn extends Column {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        IntColumn(Field field, SQLType type, MethodHandle getter, MethodHandle setter) {
+            super(field, type);
+            this.getter = getter.asType(MethodType.methodType(int.class, IRecorder.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, IRecorder.class, int.class));
+        }
+
+        int getInt(IRecorder alog) {
+            try {
+                return (int) getter.invokeExact(alog);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            int value = getInt(alog);
+            if (numeric) {
+                statement.setInt(index, value);
+            } else {
+                statement.setString(index, Integer.toString(value));
+            }
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            int value = resultSet.getInt(index);
+            if (resultSet.wasNull()) {
+                return;
+            }
+            try {
+                setter.invokeExact(alog, value);
+            } catch (Throwable e) {
+                throw toSQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            sb.append(getInt(alog));
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            buffer.writeLong(getInt(alog));
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            return getInt(alog);
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            buffer.putInt(getInt(alog));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            try {
+                setter.invokeExact(alog, buffer.getInt());
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getInt(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void add(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getInt(target) + getInt(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        boolean isAdditive() {
+            return true;
+        }
+    }
+
+    static final class DoubleColumn extends Column {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        DoubleColumn(Field field, SQLType type, MethodHandle getter, MethodHandle setter) {
+            super(field, type);
+            this.getter = getter.asType(MethodType.methodType(double.class, IRecorder.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, IRecorder.class, double.class));
+        }
+
+        double getDouble(IRecorder alog) {
+            try {
+                return (double) getter.invokeExact(alog);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            double value = getDouble(alog);
+            if (numeric) {
+                statement.setDouble(index, value);
+            } else {
+                statement.setString(index, Double.toString(value));
+            }
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            double value = resultSet.getDouble(index);
+            if (resultSet.wasNull()) {
+                return;
+            }
+            try {
+                setter.invokeExact(alog, value);
+            } catch (Throwable e) {
+                throw toSQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            sb.append(getDouble(alog));
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            buffer.writeText(Double.toString(getDouble(alog)));
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            return getDouble(alog);
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            buffer.putDouble(getDouble(alog));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            try {
+                setter.invokeExact(alog, buffer.getDouble());
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getDouble(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void add(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getDouble(target) + getDouble(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        boolean isAdditive() {
+            return true;
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        BooleanColumn(Field field, SQLType type, MethodHandle getter, MethodHandle setter) {
+            super(field, type);
+            this.getter = getter.asType(MethodType.methodType(boolean.class, IRecorder.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, IRecorder.class, boolean.class));
+        }
+
+        boolean getBoolean(IRecorder alog) {
+            try {
+                return (boolean) getter.invokeExact(alog);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            boolean value = getBoolean(alog);
+            if (numeric) {
+                statement.setBoolean(index, value);
+            } else {
+                statement.setString(index, Boolean.toString(value));
+            }
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            boolean value = resultSet.getBoolean(index);
+            if (resultSet.wasNull()) {
+                return;
+            }
+            try {
+                setter.invokeExact(alog, value);
+            } catch (Throwable e) {
+                throw toSQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            sb.append(getBoolean(alog));
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            boolean value = getBoolean(alog);
+            if (numeric) {
+                buffer.writeLong(value ? 1 : 0);
+            } else {
+                buffer.writeText(Boolean.toString(value));
+            }
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            return getBoolean(alog);
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            buffer.put((byte) (getBoolean(alog) ? 1 : 0));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            try {
+                setter.invokeExact(alog, buffer.get() != 0);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getBoolean(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    static final class StringColumn extends Column {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        StringColumn(Field field, SQLType type, MethodHandle getter, MethodHandle setter) {
+            super(field, type);
+            this.getter = getter.asType(MethodType.methodType(String.class, IRecorder.class));
+            this.setter = setter.asType(MethodType.methodType(void.class, IRecorder.class, String.class));
+        }
+
+        String getString(IRecorder alog) {
+            try {
+                return (String) getter.invokeExact(alog);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            RecorderUtil.setParameter(statement, index, type, getString(alog));
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            String value = resultSet.getString(index);
+            if (value == null) {
+                return;
+            }
+            try {
+                setter.invokeExact(alog, value);
+            } catch (Throwable e) {
+                throw toSQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            appendEscaped(sb, getString(alog));
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            buffer.writeText(getString(alog));
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            return getString(alog);
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            RecorderCodec.writeString(buffer, getString(alog));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            try {
+                setter.invokeExact(alog, RecorderCodec.readString(buffer));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                setter.invokeExact(target, getString(source));
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+    }
+
+    /**
+     * 其他类型的字段使用反射读写
+     */
+    static final class ReflectColumn extends Column {
+
+        ReflectColumn(Field field, SQLType type) {
+            super(field, type);
+        }
+
+        @Override
+        void bind(PreparedStatement statement, int index, IRecorder alog) throws SQLException {
+            RecorderUtil.setParameter(statement, index, type, get(alog));
+        }
+
+        @Override
+        void read(ResultSet resultSet, int index, IRecorder alog) throws SQLException {
+            Object object = resultSet.getObject(index);
+            if (object == null) {
+                return;
+            }
+            try {
+                field.set(alog, object);
+            } catch (IllegalAccessException e) {
+                throw new SQLException(e);
+            }
+        }
+
+        @Override
+        void append(StringBuilder sb, IRecorder alog) {
+            Object value = get(alog);
+            appendEscaped(sb, value == null ? null : value.toString());
+        }
+
+        @Override
+        void write(LoadDataBuffer buffer, IRecorder alog) {
+            Object value = get(alog);
+            buffer.writeText(value == null ? null : value.toString());
+        }
+
+        @Override
+        Object get(IRecorder alog) {
+            try {
+                return field.get(alog);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void encode(ByteBuffer buffer, IRecorder alog) {
+            RecorderCodec.writeObject(buffer, get(alog));
+        }
+
+        @Override
+        void decode(ByteBuffer buffer, IRecorder alog) {
+            Object value = RecorderCodec.readObject(buffer);
+            if (value == null) {
+                return;
+            }
+            try {
+                field.set(alog, value);
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                log.warn("can not decode field:" + field + ",value:" + value);
+            }
+        }
+
+        @Override
+        void copy(IRecorder source, IRecorder target) {
+            try {
+                field.set(target, field.get(source));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +50,10 @@ public class RecorderChecker {
             throw new RecorderCheckException("table name: " + lowerCase + " duplicated!");
         }
         tables.put(lowerCase, bean);
+        // 注册时预先编译字段绑定器
+        if (!Modifier.isAbstract(bean.getModifiers())) {
+            RecorderBinder.of(bean);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -186,4 +192,13 @@ public class RecorderChecker {
     public Class<? extends IRecorder> getTableClass(String tableName) {
         return tables.get(tableName);
     }
+
+    /**
+     * 获取所有已注册的日志类
+     *
+     * @return 日志类
+     */
+    public Collection<Class<? extends IRecorder>> getTableClasses() {
+        return Collections.unmodifiableCollection(tables.values());
+    }
 }
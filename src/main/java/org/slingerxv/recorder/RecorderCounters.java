@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一张表或一个日志类的写入计数
+ *
+ * @author hank
+ */
+public final class RecorderCounters {
+    private final LongAdder doneLogNum = new LongAdder();
+    private final LongAdder lostLogNum = new LongAdder();
+    private final LongAdder batchNum = new LongAdder();
+
+    RecorderCounters() {
+    }
+
+    void done(int rows) {
+        doneLogNum.add(rows);
+        batchNum.increment();
+    }
+
+    void lost(int rows) {
+        lostLogNum.add(rows);
+    }
+
+    /**
+     * 写入成功的日志数量
+     *
+     * @return
+     */
+    public long getDoneLogNum() {
+        return doneLogNum.sum();
+    }
+
+    /**
+     * 丢失的日志数量
+     *
+     * @return
+     */
+    public long getLostLogNum() {
+        return lostLogNum.sum();
+    }
+
+    /**
+     * 写入的批次数量
+     *
+     * @return
+     */
+    public long getBatchNum() {
+        return batchNum.sum();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 查询结果的游标，逐行读取并映射为日志，不把整个结果集放入内存
+ * <p>
+ * 游标独占一个连接，读完、读取出错或调用close时释放，未读完的游标必须关闭(建议使用try-with-resources)
+ *
+ * @author hank
+ */
+public final class RecorderCursor<T extends IRecorder> implements Iterator<T>, AutoCloseable {
+    private static Logger log = LoggerFactory.getLogger(RecorderCursor.class);
+    private final Class<T> clss;
+    private final RecorderBinder binder;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    // 读取计划(读到第一行时获取)
+    private int[] plan;
+    // 已读出但尚未取走的下一行
+    private T next;
+    private boolean closed;
+
+    private RecorderCursor(Class<T> clss, Connection connection, PreparedStatement statement, ResultSet resultSet) {
+        this.clss = clss;
+        this.binder = RecorderBinder.of(clss);
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+    }
+
+    /**
+     * 打开游标，失败时关闭连接
+     *
+     * @param clss       日志类
+     * @param connection 连接(由游标负责关闭)
+     * @param sql        查询语句
+     * @param parameters 语句参数
+     * @param fetchSize  每次从服务端读取的行数(MySQL为Integer.MIN_VALUE时逐行流式读取)
+     * @return 游标
+     * @throws SQLException
+     */
+    static <T extends IRecorder> RecorderCursor<T> open(Class<T> clss, Connection connection, String sql,
+                                                        List<Object> parameters, int fetchSize) throws SQLException {
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            RecorderUtil.bindParameters(statement, parameters);
+            try {
+                statement.setFetchSize(fetchSize);
+            } catch (SQLException e) {
+                // 部分驱动不接受MySQL的流式读取标记，使用驱动默认值
+                log.debug("fetch size not supported:" + fetchSize + "," + e.getMessage());
+            }
+            return new RecorderCursor<>(clss, connection, statement, statement.executeQuery());
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(statement, connection);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            if (plan == null) {
+                plan = binder.plan(resultSet);
+            }
+            next = clss.cast(binder.read(resultSet, plan));
+            return true;
+        } catch (SQLException | InstantiationException | IllegalAccessException e) {
+            close();
+            throw new RecorderQueryException(e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * 以顺序流的方式读取，流关闭时关闭游标
+     *
+     * @return
+     */
+    public Stream<T> stream() {
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * 释放结果集、语句和连接(可重复调用)
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+        } catch (SQLException e) {
+            log.warn(e.getMessage(), e);
+        }
+        closeQuietly(statement, connection);
+    }
+
+    private static void closeQuietly(PreparedStatement statement, Connection connection) {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            log.warn(e.getMessage(), e);
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn(e.getMessage(), e);
+        }
+    }
+}
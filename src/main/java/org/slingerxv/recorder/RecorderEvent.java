@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志写入事件(入队时即确定目标表，避免跨越滚动边界写错表)
+ *
+ * @author hank
+ */
+final class RecorderEvent {
+    // 日志实体
+    IRecorder record;
+    // 目标表名
+    String tableName;
+    // 写入确认(为空时不需要确认)
+    RecorderAck ack;
+    // 入队时间(System.nanoTime)
+    long enqueueNanos;
+
+    RecorderEvent() {
+    }
+
+    RecorderEvent(IRecorder record, String tableName, RecorderAck ack) {
+        this.record = record;
+        this.tableName = tableName;
+        this.ack = ack;
+        this.enqueueNanos = System.nanoTime();
+    }
+
+    void copy(RecorderEvent source) {
+        this.record = source.record;
+        this.tableName = source.tableName;
+        this.ack = source.ack;
+        this.enqueueNanos = source.enqueueNanos;
+    }
+
+    /**
+     * 被DROP_OLDEST策略丢弃
+     */
+    void drop() {
+        if (ack != null) {
+            ack.fail(new RecorderTaskOverloadException("task count is overload,drop oldest task:" + record));
+        }
+    }
+
+    void clear() {
+        this.record = null;
+        this.tableName = null;
+        this.ack = null;
+        this.enqueueNanos = 0;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志入口队列
+ *
+ * @author hank
+ */
+interface RecorderIntake {
+
+    /**
+     * 放入一条日志，队列已满时立即返回false
+     *
+     * @param record    日志
+     * @param tableName 目标表名
+     * @param ack       写入确认(可为空)
+     * @return 是否成功
+     */
+    boolean offer(IRecorder record, String tableName, RecorderAck ack);
+
+    /**
+     * 放入一条日志，队列已满时最多等待timeoutNanos
+     *
+     * @param record       日志
+     * @param tableName    目标表名
+     * @param ack          写入确认(可为空)
+     * @param timeoutNanos 最长等待时间(纳秒)
+     * @return 是否成功
+     * @throws InterruptedException
+     */
+    boolean offer(IRecorder record, String tableName, RecorderAck ack, long timeoutNanos)
+            throws InterruptedException;
+
+    /**
+     * 丢弃最旧的一条日志(日志需要确认时以过载异常完成)
+     *
+     * @param tableName 放不进入口的日志的目标表名(分道入口据此选择要丢弃的队列)
+     * @return 被丢弃的日志，没有时返回空
+     */
+    RecorderEvent dropOldest(String tableName);
+
+    /**
+     * 取出日志并复制到写入线程自己的事件数组中，队列为空时最多等待timeoutNanos
+     *
+     * @param events       写入线程的事件数组
+     * @param offset       起始位置
+     * @param max          最多取出数量
+     * @param timeoutNanos 最长等待时间(纳秒)
+     * @return 取出数量
+     * @throws InterruptedException
+     */
+    int drainTo(RecorderEvent[] events, int offset, int max, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * 当前日志数量
+     *
+     * @return 数量
+     */
+    int size();
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于内存映射文件的日志暂存
+ * <p>
+ * 日志按段追加写入目录下的定长文件，每段文件头记录已回放的位置，数据库恢复后按批回放并删除已回放完的段，
+ * 进程重启后会继续回放上次未回放完的段。写入中的段在原地回放到当前写入位置，只有写满时才切换新段，
+ * 数据库长时间不可用时段文件数量只随暂存的数据量增长
+ * <p>
+ * 段文件格式：[magic int][已回放位置 int][记录]...，每条记录为[长度 int][表名][类名][结构摘要 int][列数据]，
+ * 长度在数据写完后才写入，长度为0表示段内没有更多记录
+ *
+ * @author hank
+ */
+public class RecorderJournal implements RecorderSpillStore, Closeable {
+    private static Logger log = LoggerFactory.getLogger(RecorderJournal.class);
+    private static final int MAGIC = 0x524A4E4C;
+    private static final int HEADER_SIZE = 8;
+    private static final int REPLAYED_POSITION = 4;
+    private static final String SUFFIX = ".journal";
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private final File directory;
+    private final int segmentSize;
+    // 待回放的段(不再写入)
+    private final Deque<Segment> sealed = new ArrayDeque<>();
+    // 同一时间只允许一个回放，classCache只在回放时访问
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final Map<String, Class<? extends IRecorder>> classCache = new HashMap<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private Segment active;
+    private long nextSegmentId;
+    private boolean closed;
+
+    public RecorderJournal(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * 打开暂存目录，目录中已有的段会作为待回放的段
+     *
+     * @param directory   暂存目录
+     * @param segmentSize 每段文件大小(字节)
+     * @throws IOException
+     */
+    public RecorderJournal(File directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE + 4) {
+            throw new IllegalArgumentException("segmentSize too small:" + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can not create journal directory:" + directory);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                Segment segment = Segment.open(file);
+                if (segment == null) {
+                    log.error("invalid journal segment,ignore:" + file);
+                    continue;
+                }
+                sealed.add(segment);
+                nextSegmentId = Math.max(nextSegmentId, segmentId(file) + 1);
+            }
+        }
+        if (!sealed.isEmpty()) {
+            log.info("journal recovered segments:" + sealed.size() + ",directory:" + directory);
+        }
+    }
+
+    /**
+     * 追加一条日志
+     *
+     * @param tableName 目标表名
+     * @param record    日志
+     * @return 是否成功(单条日志超过段大小或文件写入失败时返回false)
+     */
+    @Override
+    public synchronized boolean spill(String tableName, IRecorder record) {
+        if (closed) {
+            return false;
+        }
+        try {
+            int length = encode(tableName, record);
+            if (length + 4 > segmentSize - HEADER_SIZE) {
+                log.error("journal record too large:" + length + ",drop:" + record);
+                return false;
+            }
+            if (active == null || active.remaining() < length + 4) {
+                seal();
+                active = Segment.create(new File(directory, segmentName(nextSegmentId++)), segmentSize);
+            }
+            active.append(scratch);
+            return true;
+        } catch (Exception e) {
+            log.error("journal append failed:" + record, e);
+            return false;
+        }
+    }
+
+    /**
+     * 是否有待回放的日志
+     *
+     * @return
+     */
+    public synchronized boolean hasPending() {
+        return !sealed.isEmpty() || (active != null && active.position() > active.replayed);
+    }
+
+    /**
+     * 按批回放所有已写入的日志，每批成功后记录回放位置，回放完的段会被删除
+     * <p>
+     * 多个线程同时调用时依次回放，结构已变化或无法解析的记录会被丢弃并通知handler
+     *
+     * @param batchSize 每批数量
+     * @param handler   批次处理(抛出异常时停止回放，下次从失败的批次开始)
+     * @return 回放的日志数量
+     * @throws Exception handler抛出的异常
+     */
+    int replay(int batchSize, ReplayHandler handler) throws Exception {
+        replayLock.lock();
+        try {
+            return replayAll(batchSize, handler);
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private int replayAll(int batchSize, ReplayHandler handler) throws Exception {
+        RecorderEvent[] events = new RecorderEvent[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            events[i] = new RecorderEvent();
+        }
+        int total = 0;
+        for (; ; ) {
+            Segment segment;
+            int end;
+            boolean writing;
+            synchronized (this) {
+                writing = sealed.isEmpty();
+                segment = writing ? active : sealed.peek();
+                if (segment == null) {
+                    return total;
+                }
+                // 写入中的段只回放到当前写入位置，之前的记录都已完整写入
+                end = segment.position();
+            }
+            total += replay(segment, end, events, handler);
+            synchronized (this) {
+                if (!writing) {
+                    sealed.poll();
+                } else if (active == segment && active.position() == active.replayed) {
+                    // 回放完且没有新写入的段直接删除，下次暂存时再创建
+                    active = null;
+                } else {
+                    // 回放期间有新写入，继续回放(写满切换后在sealed中)
+                    continue;
+                }
+            }
+            segment.delete();
+        }
+    }
+
+    private int replay(Segment segment, int end, RecorderEvent[] events, ReplayHandler handler) throws Exception {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = segment.replayed;
+        int total = 0;
+        while (true) {
+            int count = 0;
+            int next = position;
+            while (count < events.length && next + 4 <= end) {
+                int length = buffer.getInt(next);
+                if (length <= 0 || next + 4 + length > end) {
+                    break;
+                }
+                buffer.limit(next + 4 + length).position(next + 4);
+                if (decode(buffer, events[count], handler)) {
+                    count++;
+                }
+                buffer.limit(buffer.capacity());
+                next += 4 + length;
+            }
+            if (next == position) {
+                return total;
+            }
+            if (count > 0) {
+                handler.write(events, count);
+                total += count;
+            }
+            for (int i = 0; i < count; i++) {
+                events[i].clear();
+            }
+            position = next;
+            segment.replay(position);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (active != null) {
+            active.close();
+            active = null;
+        }
+        for (Segment segment : sealed) {
+            segment.close();
+        }
+        sealed.clear();
+    }
+
+    private void seal() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            sealed.add(active);
+            active = null;
+        }
+    }
+
+    private int encode(String tableName, IRecorder record) {
+        RecorderBinder binder = RecorderBinder.of(record.getClass());
+        for (; ; ) {
+            scratch.clear();
+            try {
+                RecorderCodec.writeString(scratch, tableName);
+                RecorderCodec.writeString(scratch, record.getClass().getName());
+                scratch.putInt(binder.getSchemaHash());
+                binder.encode(scratch, record);
+                scratch.flip();
+                return scratch.remaining();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private boolean decode(ByteBuffer buffer, RecorderEvent event, ReplayHandler handler) {
+        String tableName = RecorderCodec.readString(buffer);
+        String className = RecorderCodec.readString(buffer);
+        Class<? extends IRecorder> clss = null;
+        try {
+            clss = loadClass(className);
+            if (clss == null) {
+                log.error("journal record is not a recorder,drop:" + className + ",table:" + tableName);
+                handler.drop(tableName, null);
+                return false;
+            }
+            RecorderBinder binder = RecorderBinder.of(clss);
+            if (buffer.getInt() != binder.getSchemaHash()) {
+                log.error("journal record schema changed,drop:" + className + ",table:" + tableName);
+                handler.drop(tableName, clss);
+                return false;
+            }
+            event.record = binder.decode(buffer);
+            event.tableName = tableName;
+            return true;
+        } catch (Exception e) {
+            log.error("journal record decode failed,drop:" + className + ",table:" + tableName, e);
+            handler.drop(tableName, clss);
+            return false;
+        }
+    }
+
+    /**
+     * 加载记录中的日志类(不初始化)，不是IRecorder的类返回null
+     *
+     * @param className 类名
+     * @return 日志类
+     * @throws ClassNotFoundException
+     */
+    private Class<? extends IRecorder> loadClass(String className) throws ClassNotFoundException {
+        Class<? extends IRecorder> clss = classCache.get(className);
+        if (clss != null) {
+            return clss;
+        }
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        Class<?> loaded = Class.forName(className, false,
+                loader != null ? loader : RecorderJournal.class.getClassLoader());
+        if (!IRecorder.class.isAssignableFrom(loaded)) {
+            return null;
+        }
+        clss = loaded.asSubclass(IRecorder.class);
+        classCache.put(className, clss);
+        return clss;
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%016d", id) + SUFFIX;
+    }
+
+    private static long segmentId(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 回放批次处理
+     */
+    interface ReplayHandler {
+        void write(RecorderEvent[] events, int size) throws Exception;
+
+        /**
+         * 一条记录被丢弃
+         *
+         * @param tableName 目标表名
+         * @param clss      日志类，类无法加载时为null
+         */
+        default void drop(String tableName, Class<? extends IRecorder> clss) {
+        }
+    }
+
+    /**
+     * 一个段文件
+     */
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // 已回放位置，回放线程写入，hasPending读取
+        private volatile int replayed;
+
+        private Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.replayed = buffer.getInt(REPLAYED_POSITION);
+        }
+
+        static Segment create(File file, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(REPLAYED_POSITION, HEADER_SIZE);
+            buffer.position(HEADER_SIZE);
+            return new Segment(file, channel, buffer);
+        }
+
+        static Segment open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                channel.close();
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int replayed = buffer.getInt(REPLAYED_POSITION);
+            if (buffer.getInt(0) != MAGIC || replayed < HEADER_SIZE || replayed > size) {
+                channel.close();
+                return null;
+            }
+            // 恢复的段只用于回放，不再写入
+            buffer.position(buffer.capacity());
+            return new Segment(file, channel, buffer);
+        }
+
+        int position() {
+            return buffer.position();
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        void replay(int position) {
+            buffer.putInt(REPLAYED_POSITION, position);
+            replayed = position;
+        }
+
+        void append(ByteBuffer record) {
+            int start = buffer.position();
+            int length = record.remaining();
+            buffer.position(start + 4);
+            buffer.put(record);
+            // 长度最后写入，进程中途退出时不会出现半条记录
+            buffer.putInt(start, length);
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+
+        /**
+         * 关闭并删除段文件，调用后不能再访问buffer
+         */
+        void delete() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn(e.getMessage(), e);
+            }
+            unmap(buffer);
+            if (!file.delete()) {
+                log.warn("journal segment delete failed:" + file);
+            }
+        }
+
+        /**
+         * 立即释放内存映射，不等待GC回收buffer(释放失败时仍由GC回收)
+         *
+         * @param buffer 映射
+         */
+        private static void unmap(MappedByteBuffer buffer) {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner;
+                try {
+                    invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                } catch (NoSuchMethodException e) {
+                    // Java 8没有invokeCleaner，直接调用buffer的cleaner
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                    return;
+                }
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (Exception e) {
+                log.warn("journal segment unmap failed:" + e.getMessage());
+            }
+        }
+    }
+}
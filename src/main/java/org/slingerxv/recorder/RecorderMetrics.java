@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 日志代理的运行指标
+ * <p>
+ * 按表和日志类统计写入数量，按直方图统计入队到提交的延迟、SQL构建耗时、JDBC执行耗时和每次插入的行数。
+ * 表和日志类的计数器在第一次出现时创建，之后的记录不产生分配。
+ * 滚动表的计数按周期保留：出现新表时清理早于上一周期的表，当前和上一周期的表不会被清理，更早的表计数只累计在日志类上
+ *
+ * @author hank
+ */
+public final class RecorderMetrics {
+    private final ConcurrentMap<String, RecorderCounters> tableCounters = new ConcurrentHashMap<>();
+    // 每个日志类已统计的表
+    private final ConcurrentMap<Class<? extends IRecorder>, ClassTables> classTables = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<? extends IRecorder>, RecorderCounters> classCounters = new ConcurrentHashMap<>();
+    // 入队到提交的延迟(纳秒)
+    private final RecorderHistogram commitLatency = new RecorderHistogram();
+    // SQL构建耗时(纳秒)
+    private final RecorderHistogram sqlBuildTime = new RecorderHistogram();
+    // JDBC执行耗时(纳秒)
+    private final RecorderHistogram executeTime = new RecorderHistogram();
+    // 每次插入的行数
+    private final RecorderHistogram batchSizes = new RecorderHistogram();
+    // 执行的建表语句数量
+    private final LongAdder ddlNum = new LongAdder();
+
+    // 日志类的表名解析器(无法确定时返回null，不清理该类的表)
+    private final Function<Class<? extends IRecorder>, TableNameResolver> resolvers;
+    private final LongSupplier clock;
+
+    /**
+     * @param resolvers 日志类的表名解析器
+     * @param clock     时钟(毫秒)
+     */
+    RecorderMetrics(Function<Class<? extends IRecorder>, TableNameResolver> resolvers, LongSupplier clock) {
+        this.resolvers = resolvers;
+        this.clock = clock;
+    }
+
+    void done(String tableName, Class<? extends IRecorder> clss, int rows) {
+        ClassTables tables = classTables(clss);
+        synchronized (tables) {
+            tableCounters(tables, tableName).done(rows);
+        }
+        classCounters(clss).done(rows);
+        batchSizes.record(rows);
+    }
+
+    void lost(String tableName, Class<? extends IRecorder> clss, int rows) {
+        ClassTables tables = classTables(clss);
+        synchronized (tables) {
+            tableCounters(tables, tableName).lost(rows);
+        }
+        classCounters(clss).lost(rows);
+    }
+
+    void ddl() {
+        ddlNum.increment();
+    }
+
+    void commit(long latencyNanos) {
+        commitLatency.record(latencyNanos);
+    }
+
+    void sqlBuild(long nanos) {
+        sqlBuildTime.record(nanos);
+    }
+
+    void execute(long nanos) {
+        executeTime.record(nanos);
+    }
+
+    private ClassTables classTables(Class<? extends IRecorder> clss) {
+        ClassTables tables = classTables.get(clss);
+        if (tables == null) {
+            tables = classTables.computeIfAbsent(clss, key -> new ClassTables(resolvers.apply(key)));
+        }
+        return tables;
+    }
+
+    /**
+     * 获取表的计数器(持有该类的锁时调用，查找和计数不会与清理交错)
+     *
+     * @param tables    日志类已统计的表
+     * @param tableName 表名
+     * @return 计数器
+     */
+    private RecorderCounters tableCounters(ClassTables tables, String tableName) {
+        RecorderCounters counters = tableCounters.get(tableName);
+        if (counters == null) {
+            counters = new RecorderCounters();
+            tableCounters.put(tableName, counters);
+            sweep(tables, tableName);
+        }
+        return counters;
+    }
+
+    /**
+     * 出现新表时清理该类早于上一周期的表(新表本身保留到下次清理，重试或回放写入旧表时不影响当前周期的计数)
+     *
+     * @param tables    日志类已统计的表
+     * @param tableName 新表名
+     */
+    private void sweep(ClassTables tables, String tableName) {
+        TableNameResolver resolver = tables.resolver;
+        if (resolver == null || resolver.getRollType() == RollType.NEVER_ROLL) {
+            tables.periodEnds.put(tableName, Long.MAX_VALUE);
+            return;
+        }
+        long previousStart = resolver.period(resolver.period(clock.getAsLong()).start - 1).start;
+        Iterator<Map.Entry<String, Long>> iterator = tables.periodEnds.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() <= previousStart) {
+                tableCounters.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+        tables.periodEnds.put(tableName, resolver.periodEnd(tableName));
+    }
+
+    private RecorderCounters classCounters(Class<? extends IRecorder> clss) {
+        RecorderCounters counters = classCounters.get(clss);
+        if (counters == null) {
+            counters = classCounters.computeIfAbsent(clss, key -> new RecorderCounters());
+        }
+        return counters;
+    }
+
+    /**
+     * 按表名统计的写入数量(滚动表只保留当前和上一周期，以及最近写入过的更早的表)
+     *
+     * @return
+     */
+    public Map<String, RecorderCounters> getTableCounters() {
+        return Collections.unmodifiableMap(tableCounters);
+    }
+
+    /**
+     * 按日志类统计的写入数量
+     *
+     * @return
+     */
+    public Map<Class<? extends IRecorder>, RecorderCounters> getClassCounters() {
+        return Collections.unmodifiableMap(classCounters);
+    }
+
+    /**
+     * 日志从入队到提交的延迟(纳秒)
+     *
+     * @return
+     */
+    public RecorderHistogram getCommitLatency() {
+        return commitLatency;
+    }
+
+    /**
+     * 插入语句的构建耗时(纳秒，包括拼接SQL、绑定参数和编码LOAD DATA数据)
+     *
+     * @return
+     */
+    public RecorderHistogram getSqlBuildTime() {
+        return sqlBuildTime;
+    }
+
+    /**
+     * 插入语句的JDBC执行耗时(纳秒)
+     *
+     * @return
+     */
+    public RecorderHistogram getExecuteTime() {
+        return executeTime;
+    }
+
+    /**
+     * 每次插入的行数
+     *
+     * @return
+     */
+    public RecorderHistogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * 执行的建表语句数量
+     *
+     * @return
+     */
+    public long getDdlNum() {
+        return ddlNum.sum();
+    }
+
+    /**
+     * 一个日志类已统计的表及其周期结束时间
+     */
+    private static final class ClassTables {
+        private final TableNameResolver resolver;
+        private final Map<String, Long> periodEnds = new HashMap<>();
+
+        ClassTables(TableNameResolver resolver) {
+            this.resolver = resolver;
+        }
+    }
+}
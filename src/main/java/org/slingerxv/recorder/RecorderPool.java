@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按日志类回收的日志实例
+ * <p>
+ * 实例通过{@link RecorderProxy#acquire(Class)}取出，写入线程写完(或转入暂存文件、死信文件)后放回，
+ * 只有取过实例的日志类才会回收。每个日志类最多管理capacity个实例(池中的和已取出的)，
+ * 只有由池取出且尚未放回的实例才会被回收，其他实例(调用者自己创建的、超出数量的或重复放回的)交给GC
+ *
+ * @author hank
+ */
+final class RecorderPool {
+    private final int capacity;
+    private final Map<Class<? extends IRecorder>, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity 每个日志类最多管理的实例数量
+     */
+    RecorderPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 取出一个各列为默认值的实例，时间日志的createTime为当前时间
+     *
+     * @param clss 日志类
+     * @return 日志实例
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    <T extends IRecorder> T acquire(Class<T> clss) throws InstantiationException, IllegalAccessException {
+        Slot slot = slots.get(clss);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(clss, key -> new Slot());
+        }
+        RecorderBinder binder = RecorderBinder.of(clss);
+        IRecorder alog;
+        synchronized (slot) {
+            alog = slot.free.poll();
+            if (alog != null) {
+                slot.lent.add(alog);
+            }
+        }
+        if (alog == null) {
+            alog = binder.newInstance();
+            synchronized (slot) {
+                if (slot.free.size() + slot.lent.size() < capacity) {
+                    slot.lent.add(alog);
+                }
+            }
+            return clss.cast(alog);
+        }
+        binder.reset(alog);
+        if (alog instanceof TimeBasedLog) {
+            ((TimeBasedLog) alog).createTime = System.currentTimeMillis();
+        }
+        return clss.cast(alog);
+    }
+
+    /**
+     * 放回一个不再使用的实例，不是由池取出或已经放回的实例被忽略
+     *
+     * @param alog 日志
+     */
+    void release(IRecorder alog) {
+        Slot slot = slots.get(alog.getClass());
+        if (slot == null) {
+            return;
+        }
+        synchronized (slot) {
+            if (slot.lent.remove(alog)) {
+                slot.free.offer(alog);
+            }
+        }
+    }
+
+    void release(List<IRecorder> rows) {
+        for (IRecorder row : rows) {
+            release(row);
+        }
+    }
+
+    /**
+     * 当前可取出的实例数量
+     *
+     * @param clss 日志类
+     * @return
+     */
+    int available(Class<? extends IRecorder> clss) {
+        Slot slot = slots.get(clss);
+        if (slot == null) {
+            return 0;
+        }
+        synchronized (slot) {
+            return slot.free.size();
+        }
+    }
+
+    /**
+     * 一个日志类的空闲实例和已取出的实例(按引用比较)
+     */
+    private static final class Slot {
+        private final Deque<IRecorder> free = new ArrayDeque<>();
+        private final Set<IRecorder> lent = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
@@ -15,26 +15,41 @@
  */
 package org.slingerxv.recorder;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
@@ -47,12 +62,63 @@ import org.slf4j.LoggerFactory;
  */
 public class RecorderProxy {
     private static Logger log = LoggerFactory.getLogger(RecorderProxy.class);
+    // 停止时等待写入线程完成的最长时间(秒)
+    static final long STOP_AWAIT_SECONDS = 60;
+    // DROP_OLDEST策略丢弃旧日志后重新放入的次数
+    private static final int DROP_OLDEST_RETRY = 3;
     private ThreadPoolExecutor threadPool;
-    private BlockingQueue<Runnable> logTaskQueue;
+    // 范围查询线程池
+    private ThreadPoolExecutor queryPool;
+    // 提前建表调度器
+    private ScheduledExecutorService tableCreator;
+    // 暂存文件
+    private RecorderJournal journal;
+    // 暂存回放调度器
+    private ScheduledExecutorService journalReplayer;
+    // 每个日志类的预聚合(没有时为空)
+    private final Map<Class<? extends IRecorder>, Optional<RecorderAggregator>> aggregators = new ConcurrentHashMap<>();
+    // 结束聚合窗口的线程
+    private ScheduledExecutorService aggregateFlusher;
+    // 回收的日志实例(未开启时为空)
+    private final RecorderPool pool;
+    // 写入失败的重试调度
+    private RecorderRetry retry;
+    // 死信文件
+    private RecorderJournal deadLetter;
+    private RecorderIntake intake;
     private final RecorderChecker checker = new RecorderChecker();
-    private boolean isStop = true;
+    private volatile boolean isStop = true;
     private final LongAdder doneLogNum = new LongAdder();
     private final LongAdder lostLogNum = new LongAdder();
+    // 过载时阻塞等待的日志数量
+    private final LongAdder blockedLogNum = new LongAdder();
+    // 过载时丢弃的新日志数量
+    private final LongAdder droppedNewestLogNum = new LongAdder();
+    // 过载时丢弃的旧日志数量
+    private final LongAdder droppedOldestLogNum = new LongAdder();
+    // 过载时暂存的日志数量
+    private final LongAdder spilledLogNum = new LongAdder();
+    // 重试的日志数量(每次重试累计)
+    private final LongAdder retriedLogNum = new LongAdder();
+    // 写入死信文件的日志数量
+    private final LongAdder deadLetterLogNum = new LongAdder();
+    // 合并到预聚合行中的日志数量
+    private final LongAdder aggregatedLogNum = new LongAdder();
+    // 被采样掉的日志数量
+    private final LongAdder sampledOutLogNum = new LongAdder();
+    // 被限流丢弃的日志数量
+    private final LongAdder rateLimitedLogNum = new LongAdder();
+    // 按表和日志类统计的指标
+    private final RecorderMetrics metrics = new RecorderMetrics(this::getTableNameResolver,
+            System::currentTimeMillis);
+    // 已注册的JMX名称
+    private ObjectName registeredMBeanName;
+    // 已确认存在的表(写入时不再执行SHOW TABLES)
+    private final Set<String> knownTables = ConcurrentHashMap.newKeySet();
+    // 每张表的插入模板
+    private final Map<String, String> preparedInsertSqls = new ConcurrentHashMap<>();
+    // 每张表的LOAD DATA语句
+    private final Map<String, String> loadDataSqls = new ConcurrentHashMap<>();
     // -- config
     // 扫描项目包名(日志结构检查)
     private String[] scanPackages;
@@ -62,6 +128,70 @@ public class RecorderProxy {
     private final int threadMaximumPoolSize;
     // 任务上限数量
     private final int taskMaxSize;
+    // 环形队列等待策略(为空时使用阻塞队列)
+    private final WaitStrategy waitStrategy;
+    // 过载策略
+    private final OverloadPolicy overloadPolicy;
+    // 按日志类指定的过载策略
+    private final Map<Class<? extends IRecorder>, OverloadPolicy> classOverloadPolicies;
+    // 按日志类指定的采样和限流
+    private final Map<Class<? extends IRecorder>, RecorderThrottle.Spec> classThrottleSpecs;
+    // 每个日志类生效的采样和限流(注解和设置合并后，没有时为空)
+    private final Map<Class<? extends IRecorder>, Optional<RecorderThrottle>> throttles = new ConcurrentHashMap<>();
+    // BLOCK策略最长等待时间(毫秒)
+    private final long overloadBlockMillis;
+    // SPILL策略的暂存
+    private final RecorderSpillStore spillStore;
+    // 暂存文件目录
+    private final File journalDirectory;
+    // 暂存文件每段大小(字节)
+    private final int journalSegmentSize;
+    // 暂存回放间隔(毫秒)
+    private final long journalReplayIntervalMillis;
+    // 暂时性异常的最大重试次数
+    private final int retryAttempts;
+    // 首次重试的等待时间(毫秒)
+    private final long retryBackoffMillis;
+    // 重试等待时间上限(毫秒)
+    private final long retryMaxBackoffMillis;
+    // 死信文件目录
+    private final File deadLetterDirectory;
+    // 按表分道的写入线程数量(0为所有写入线程共用一个入口)
+    private final int writerLanes;
+    // 每批写入的最大日志数量
+    private final int batchSize;
+    // 批次未满时最长等待时间(毫秒)
+    private final long maxLingerMillis;
+    // 目标p99写入延迟(毫秒，0为固定批次)
+    private final long targetLatencyMillis;
+    // 批次控制
+    private final BatchController batchController;
+    // 提前建表时间(毫秒)
+    private final long tablePreCreateLeadMillis;
+    // 提前建表使用的时钟(毫秒)
+    private final LongSupplier preCreateClock;
+    // 插入方式
+    private final InsertMode insertMode;
+    // 按日志类指定的插入方式
+    private final Map<Class<? extends IRecorder>, InsertMode> classInsertModes;
+    // 驱动或服务端不支持LOAD DATA LOCAL INFILE
+    private volatile boolean loadDataUnsupported;
+    // 写入线程是否独占连接
+    private final boolean threadAffineConnection;
+    // 独占连接空闲多久后使用前做健康检查(毫秒)
+    private final long connectionValidateIntervalMillis;
+    // 每个独占连接缓存的预编译语句数量
+    private final int statementCacheSize;
+    // 游标查询每次从服务端读取的行数
+    private final int queryFetchSize;
+    // 范围查询线程数
+    private final int queryThreadPoolSize;
+    // 查询结果缓存(未开启时为空)
+    private final RecorderQueryCache queryCache;
+    // 涉及当前周期的查询结果缓存时间(毫秒，0为不缓存)
+    private final long queryCacheOpenTtlMillis;
+    // 周期结束多久后表才视为不再变化(毫秒)
+    private final long queryCacheClosedDelayMillis;
     // 数据库引擎
     private final String dbEngine;
     // 编码
@@ -69,16 +199,80 @@ public class RecorderProxy {
     // 自定义线程池
     private final ThreadPoolExecutor customInsertThreadPool;
     private final Supplier<DataSource> dataSourceFactory;
+    // JMX名称(为空时不注册)
+    private final String jmxName;
+    // 计算滚动表名使用的时区(为空时使用RecorderUtil的全局时区)
+    private final ZoneId zoneId;
+    private final Map<Class<? extends IRecorder>, TableNameResolver> tableNameResolvers = new ConcurrentHashMap<>();
 
     private RecorderProxy(RecorderProxyBuilder builder) {
         this.scanPackages = builder.scanPackages.toArray(new String[0]);
         this.taskMaxSize = builder.taskMaxSize;
+        this.waitStrategy = builder.waitStrategy;
+        this.overloadPolicy = builder.overloadPolicy;
+        this.classOverloadPolicies = new HashMap<>(builder.classOverloadPolicies);
+        this.classThrottleSpecs = new HashMap<>(builder.classThrottleSpecs);
+        // 设置有误时尽早报错
+        for (Class<? extends IRecorder> clss : classThrottleSpecs.keySet()) {
+            getThrottle(clss);
+        }
+        this.overloadBlockMillis = builder.overloadBlockMillis;
+        this.spillStore = builder.spillStore;
+        this.journalDirectory = builder.journalDirectory;
+        this.journalSegmentSize = builder.journalSegmentSize;
+        this.journalReplayIntervalMillis = builder.journalReplayIntervalMillis;
+        this.retryAttempts = builder.retryAttempts;
+        this.retryBackoffMillis = builder.retryBackoffMillis;
+        this.retryMaxBackoffMillis = builder.retryMaxBackoffMillis;
+        this.deadLetterDirectory = builder.deadLetterDirectory;
+        if (spillStore == null && journalDirectory == null && (overloadPolicy == OverloadPolicy.SPILL
+                || classOverloadPolicies.containsValue(OverloadPolicy.SPILL))) {
+            throw new IllegalArgumentException("spillStore or journal is required by OverloadPolicy.SPILL");
+        }
+        this.writerLanes = builder.writerLanes;
+        this.batchSize = builder.batchSize;
+        this.maxLingerMillis = builder.maxLingerMillis;
+        this.targetLatencyMillis = builder.targetLatencyMillis;
+        this.batchController = new BatchController(batchSize, maxLingerMillis, targetLatencyMillis);
         this.threadCorePoolSize = builder.threadCorePoolSize;
         this.threadMaximumPoolSize = builder.threadMaximumPoolSize;
+        this.tablePreCreateLeadMillis = builder.tablePreCreateLeadMillis;
+        this.preCreateClock = builder.preCreateClock;
+        this.insertMode = builder.insertMode;
+        this.classInsertModes = new HashMap<>(builder.classInsertModes);
+        this.threadAffineConnection = builder.threadAffineConnection;
+        this.connectionValidateIntervalMillis = builder.connectionValidateIntervalMillis;
+        this.statementCacheSize = builder.statementCacheSize;
+        this.queryFetchSize = builder.queryFetchSize;
+        this.queryThreadPoolSize = builder.queryThreadPoolSize;
+        this.queryCache = builder.queryCacheSize > 0 ? new RecorderQueryCache(builder.queryCacheSize) : null;
+        this.queryCacheOpenTtlMillis = builder.queryCacheOpenTtlMillis;
+        this.queryCacheClosedDelayMillis = builder.queryCacheClosedDelayMillis;
         this.dbEngine = builder.dbEngine;
         this.charset = builder.charset;
         this.customInsertThreadPool = builder.customInsertThreadPool;
         this.dataSourceFactory = Objects.requireNonNull(builder.dataSourceFactory, "dataSourceFactory");
+        this.jmxName = builder.jmxName;
+        this.pool = builder.recorderPoolSize > 0 ? new RecorderPool(builder.recorderPoolSize) : null;
+        this.zoneId = builder.zoneId;
+    }
+
+    /**
+     * 取出一个日志实例，各列为默认值，时间日志的createTime为当前时间
+     * <p>
+     * 开启recorderPoolSize后实例在写入完成后回收复用：传入execute/executeAsync/executeAll之后(包括抛出异常时)
+     * 不能再读写该实例，也不能重复提交。未开启时等同于新建实例
+     *
+     * @param clss 日志类
+     * @return 日志实例
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public <T extends IRecorder> T acquire(Class<T> clss) throws InstantiationException, IllegalAccessException {
+        if (pool == null) {
+            return clss.cast(RecorderBinder.of(clss).newInstance());
+        }
+        return pool.acquire(clss);
     }
 
     /**
@@ -96,44 +290,257 @@ public class RecorderProxy {
         }
 
         if (alog != null) {
-            if (getTaksCount() > taskMaxSize) {
-                lostLogNum.increment();
-                throw new RecorderTaskOverloadException("task count is overload,drop task:" + alog);
-            }
-            threadPool.execute(() -> {
-                try (Connection con = dataSourceFactory.get().getConnection()) {
-                    long now = System.currentTimeMillis();
-                    String buildExistTableSql_MYSQL = RecorderUtil
-                            .buildExistTableSqlMYSQL(RecorderUtil.getLogTableName(alog, now));
-                    try (PreparedStatement existStatement = con.prepareStatement(buildExistTableSql_MYSQL);
-                         ResultSet executeQuery = existStatement.executeQuery()) {
-                        if (!executeQuery.next()) {
-                            String buildCreateTableSql = RecorderUtil.buildCreateTableSqlMYSQL(alog, dbEngine, charset);
-                            try (PreparedStatement createStatement = con.prepareStatement(buildCreateTableSql)) {
-                                // 执行创建表
-                                createStatement.executeUpdate();
-                            }
+            offer(alog, null);
+        }
+        return this;
+    }
 
-                        }
+    /**
+     * 异步执行一条日志记录的插入，所在批次写入数据库后完成
+     * <p>
+     * 代理已停止时以RecorderProxyStateException完成，过载时以RecorderTaskOverloadException完成，
+     * 被采样掉或限流时以RecorderThrottledException完成，写入失败时以RecorderWriteException完成
+     *
+     * @param alog 日志实体
+     * @return 写入确认
+     */
+    public CompletableFuture<Void> executeAsync(final IRecorder alog) {
+        if (alog == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        RecorderAck ack = new RecorderAck(1);
+        if (isStop) {
+            ack.fail(new RecorderProxyStateException("stop"));
+            return ack.getFuture();
+        }
+        try {
+            offer(alog, ack);
+        } catch (RecorderTaskOverloadException e) {
+            // 过载时确认已经以异常完成
+            log.debug(e.getMessage());
+        }
+        return ack.getFuture();
+    }
+
+    /**
+     * 异步执行一组日志记录的插入，全部写入数据库后完成，任一日志失败即以异常完成
+     *
+     * @param alogs 日志实体
+     * @return 写入确认
+     * @see #executeAsync(IRecorder)
+     */
+    public CompletableFuture<Void> executeAll(final Collection<? extends IRecorder> alogs) {
+        int count = 0;
+        for (IRecorder alog : alogs) {
+            if (alog != null) {
+                count++;
+            }
+        }
+        RecorderAck ack = new RecorderAck(count);
+        if (count == 0) {
+            return ack.getFuture();
+        }
+        if (isStop) {
+            ack.fail(new RecorderProxyStateException("stop"));
+            return ack.getFuture();
+        }
+        for (IRecorder alog : alogs) {
+            if (alog == null) {
+                continue;
+            }
+            try {
+                offer(alog, ack);
+            } catch (RecorderTaskOverloadException e) {
+                // 过载时确认已经以异常完成
+                log.debug(e.getMessage());
+            }
+        }
+        return ack.getFuture();
+    }
+
+    private void offer(IRecorder alog, RecorderAck ack) throws RecorderTaskOverloadException {
+        RecorderThrottle throttle = getThrottle(alog.getClass());
+        if (throttle != null && !admit(throttle, alog, ack)) {
+            // 按策略主动丢弃的日志不计为丢失
+            recycle(alog);
+            return;
+        }
+        String tableName = getLogTableName(alog, System.currentTimeMillis());
+        RecorderAggregator aggregator = getAggregator(alog.getClass());
+        if (aggregator != null) {
+            if (aggregator.fold(alog, tableName, ack)) {
+                aggregatedLogNum.increment();
+                recycle(alog);
+            }
+            return;
+        }
+        enqueue(alog, tableName, ack, 1);
+    }
+
+    private void enqueue(IRecorder alog, String tableName, RecorderAck ack, int events)
+            throws RecorderTaskOverloadException {
+        if (!intake.offer(alog, tableName, ack)) {
+            overload(alog, tableName, ack, events);
+        }
+    }
+
+    private RecorderAggregator getAggregator(Class<? extends IRecorder> clss) {
+        Optional<RecorderAggregator> aggregator = aggregators.get(clss);
+        if (aggregator == null) {
+            aggregator = aggregators.computeIfAbsent(clss, key -> {
+                RecorderAggregator created = RecorderAggregator.of(key);
+                if (created != null) {
+                    // 窗口与时间对齐
+                    long window = created.getWindowMillis();
+                    aggregateFlusher.scheduleAtFixedRate(() -> flushAggregate(created),
+                            window - Math.floorMod(System.currentTimeMillis(), window), window,
+                            TimeUnit.MILLISECONDS);
+                }
+                return Optional.ofNullable(created);
+            });
+        }
+        return aggregator.orElse(null);
+    }
+
+    /**
+     * 结束一个日志类的当前聚合窗口，合并后的行放入入口
+     *
+     * @param aggregator 预聚合
+     */
+    private void flushAggregate(RecorderAggregator aggregator) {
+        for (RecorderAggregator.Row row : aggregator.drain()) {
+            RecorderAck ack = row.ack();
+            try {
+                enqueue(row.record, row.tableName, ack, row.count());
+            } catch (RecorderTaskOverloadException e) {
+                // 被合并的日志已按行数计为丢失
+                if (ack != null) {
+                    ack.fail(e);
+                }
+                log.error(e.getMessage());
+            } catch (RuntimeException e) {
+                lost(row.tableName, row.record.getClass(), row.count());
+                if (ack != null) {
+                    ack.fail(e);
+                }
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private RecorderThrottle getThrottle(Class<? extends IRecorder> clss) {
+        Optional<RecorderThrottle> throttle = throttles.get(clss);
+        if (throttle == null) {
+            throttle = Optional.ofNullable(RecorderThrottle.of(clss, classThrottleSpecs.get(clss)));
+            throttles.put(clss, throttle);
+        }
+        return throttle.orElse(null);
+    }
+
+    /**
+     * 先采样后限流，被采样掉的日志不消耗令牌，被丢弃时确认以{@link RecorderThrottledException}完成
+     *
+     * @param throttle 采样和限流
+     * @param alog     日志
+     * @param ack      写入确认(可为空)
+     * @return 是否放入入口
+     */
+    private boolean admit(RecorderThrottle throttle, IRecorder alog, RecorderAck ack) {
+        if (!throttle.sample(alog)) {
+            sampledOutLogNum.increment();
+            if (ack != null) {
+                ack.fail(new RecorderThrottledException(alog.getClass(), true));
+            }
+            return false;
+        }
+        if (!throttle.tryAcquire()) {
+            rateLimitedLogNum.increment();
+            if (ack != null) {
+                ack.fail(new RecorderThrottledException(alog.getClass(), false));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按过载策略处理放不进入口的日志，日志被拒绝时确认以异常完成
+     *
+     * @param alog      日志
+     * @param tableName 目标表名
+     * @param ack       写入确认(可为空)
+     * @param events    日志代表的事件数(预聚合的行为被合并的日志数)，被拒绝时按此计为丢失
+     * @throws RecorderTaskOverloadException
+     */
+    private void overload(IRecorder alog, String tableName, RecorderAck ack, int events)
+            throws RecorderTaskOverloadException {
+        OverloadPolicy policy = classOverloadPolicies.isEmpty() ? overloadPolicy
+                : classOverloadPolicies.getOrDefault(alog.getClass(), overloadPolicy);
+        switch (policy) {
+            case BLOCK:
+                blockedLogNum.increment();
+                try {
+                    if (intake.offer(alog, tableName, ack, TimeUnit.MILLISECONDS.toNanos(overloadBlockMillis))) {
+                        return;
                     }
-                    String buildInsertTableSql = RecorderUtil.buildInsertTableSqlMYSQL(alog);
-                    try (PreparedStatement insertStatement = con.prepareStatement(buildInsertTableSql)) {
-                        // 执行插入
-                        if (insertStatement.executeUpdate() > 0) {
-                            doneLogNum.increment();
-                        } else {
-                            log.error("log failed:" + alog);
-                            lostLogNum.increment();
-                        }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case DROP_NEWEST:
+                droppedNewestLogNum.increment();
+                lost(tableName, alog.getClass(), events);
+                if (ack != null) {
+                    ack.fail(new RecorderTaskOverloadException("task count is overload,drop newest task:" + alog));
+                }
+                recycle(alog);
+                return;
+            case DROP_OLDEST:
+                for (int i = 0; i < DROP_OLDEST_RETRY; i++) {
+                    RecorderEvent dropped = intake.dropOldest(tableName);
+                    if (dropped != null) {
+                        droppedOldestLogNum.increment();
+                        lost(dropped.tableName, dropped.record.getClass(), 1);
+                        recycle(dropped.record);
+                    }
+                    if (intake.offer(alog, tableName, ack)) {
+                        return;
                     }
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                    log.error("log failed:" + alog);
-                    lostLogNum.increment();
                 }
-            });
+                break;
+            case SPILL:
+                if (spill(getSpillStore(), tableName, alog)) {
+                    if (ack != null) {
+                        ack.fail(new RecorderWriteException(tableName, true, null));
+                    }
+                    // 自定义暂存可能持有实例
+                    if (spillStore == null) {
+                        recycle(alog);
+                    }
+                    return;
+                }
+                // 暂存失败时已按一条记为丢失
+                if (events > 1) {
+                    lost(tableName, alog.getClass(), events - 1);
+                }
+                RecorderTaskOverloadException spillFailed = new RecorderTaskOverloadException(
+                        "task count is overload and spill failed,drop task:" + alog);
+                if (ack != null) {
+                    ack.fail(spillFailed);
+                }
+                recycle(alog);
+                throw spillFailed;
+            default:
+                break;
         }
-        return this;
+        lost(tableName, alog.getClass(), events);
+        RecorderTaskOverloadException overload = new RecorderTaskOverloadException(
+                "task count is overload,drop task:" + alog);
+        if (ack != null) {
+            ack.fail(overload);
+        }
+        recycle(alog);
+        throw overload;
     }
 
     /**
@@ -183,12 +590,103 @@ public class RecorderProxy {
             throw new RecorderProxyStateException("stop");
         }
         String buildSelectTableSql = RecorderUtil.buildSelectCountTableSqlMYSQL(builder);
+        List<Object> parameters = builder.getParameters();
+        long expireAt = queryCache == null ? 0 : cacheExpireAt(clss, builder);
+        RecorderQueryCache.Key cacheKey = expireAt > 0
+                ? new RecorderQueryCache.Key(clss, true, buildSelectTableSql, parameters) : null;
+        if (cacheKey != null) {
+            Object cached = queryCache.get(cacheKey);
+            if (cached != null) {
+                return (Integer) cached;
+            }
+        }
         try (Connection connection = dataSourceFactory.get().getConnection();
-             PreparedStatement prepareStatement = connection.prepareStatement(buildSelectTableSql);
-             ResultSet executeQuery = prepareStatement.executeQuery()) {
-            executeQuery.next();
-            return executeQuery.getInt(1);
+             PreparedStatement prepareStatement = connection.prepareStatement(buildSelectTableSql)) {
+            RecorderUtil.bindParameters(prepareStatement, parameters);
+            try (ResultSet executeQuery = prepareStatement.executeQuery()) {
+                executeQuery.next();
+                int count = executeQuery.getInt(1);
+                if (cacheKey != null) {
+                    queryCache.put(cacheKey, count, expireAt);
+                }
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 计算查询结果的缓存过期时间
+     * <p>
+     * 只涉及本类已结束周期的滚动表时不过期；涉及当前周期、不滚动的表或其他表时按queryCacheOpenTtlMillis缓存
+     *
+     * @param clss    日志类
+     * @param builder 查询构造器
+     * @return 过期时间戳，不缓存时返回0
+     */
+    private long cacheExpireAt(Class<? extends IRecorder> clss, RecorderQueryBuilder builder) {
+        long now = System.currentTimeMillis();
+        long openExpireAt = queryCacheOpenTtlMillis > 0 ? now + queryCacheOpenTtlMillis : 0;
+        Set<String> tableNames = new HashSet<>();
+        builder.collectTables(tableNames);
+        if (tableNames.isEmpty()) {
+            return openExpireAt;
+        }
+        TableNameResolver resolver = getTableNameResolver(clss);
+        if (resolver == null) {
+            return openExpireAt;
+        }
+        for (String tableName : tableNames) {
+            long periodEnd = resolver.periodEnd(tableName.trim().toLowerCase());
+            // 周期刚结束时重试和暂存回放仍可能写入
+            if (periodEnd == Long.MAX_VALUE || periodEnd + queryCacheClosedDelayMillis > now) {
+                return openExpireAt;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 获取日志在某个时间点对应的表名(按本代理的时区)
+     *
+     * @param alog     日志
+     * @param millTime 时间戳
+     * @return 表名
+     */
+    String getLogTableName(IRecorder alog, long millTime) {
+        return getTableNameResolver(alog.getClass(), alog.rollType()).resolve(millTime);
+    }
+
+    /**
+     * 获取日志类按默认滚动方式的表名解析器
+     *
+     * @param clss 日志类
+     * @return 表名解析器，日志类无法实例化时返回null
+     */
+    TableNameResolver getTableNameResolver(Class<? extends IRecorder> clss) {
+        try {
+            return getTableNameResolver(clss, RecorderBinder.of(clss).newInstance().rollType());
+        } catch (InstantiationException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取日志类的表名解析器，没有设置时区时与RecorderUtil共用
+     *
+     * @param clss     日志类
+     * @param rollType 滚动方式
+     * @return 表名解析器
+     */
+    TableNameResolver getTableNameResolver(Class<? extends IRecorder> clss, RollType rollType) {
+        if (zoneId == null) {
+            return RecorderUtil.getTableNameResolver(clss, rollType);
         }
+        TableNameResolver resolver = tableNameResolvers.get(clss);
+        if (resolver == null || resolver.getRollType() != rollType) {
+            resolver = new TableNameResolver(clss, rollType, zoneId);
+            tableNameResolvers.put(clss, resolver);
+        }
+        return resolver;
     }
 
     /**
@@ -205,7 +703,8 @@ public class RecorderProxy {
     public Collection<String> queryRelativeTables(Class<? extends IRecorder> clss, long startTime, long endTime)
             throws InstantiationException, IllegalAccessException, SQLException {
         // 获取相关表
-        Set<String> relativeTableNames = RecorderUtil.getRelativeTableNames(clss, startTime, endTime);
+        Set<String> relativeTableNames = RecorderUtil.getRelativeTableNames(
+                getTableNameResolver(clss, RecorderBinder.of(clss).newInstance().rollType()), startTime, endTime);
         // 筛选不存在的表
         Iterator<String> iterator2 = relativeTableNames.iterator();
         try (Connection connection = dataSourceFactory.get().getConnection()) {
@@ -268,170 +767,1207 @@ public class RecorderProxy {
         }
         List<T> result = new ArrayList<>();
         String buildSelectTableSql = RecorderUtil.buildSelectTableSqlMYSQL(builder);
+        List<Object> parameters = builder.getParameters();
+        long expireAt = queryCache == null ? 0 : cacheExpireAt(clss, builder);
+        RecorderQueryCache.Key cacheKey = expireAt > 0
+                ? new RecorderQueryCache.Key(clss, false, buildSelectTableSql, parameters) : null;
+        RecorderBinder binder = RecorderBinder.of(clss);
+        if (cacheKey != null) {
+            @SuppressWarnings("unchecked")
+            List<T> cached = (List<T>) queryCache.get(cacheKey);
+            if (cached != null) {
+                return copy(binder, clss, cached);
+            }
+        }
         try (Connection connection = dataSourceFactory.get().getConnection();
-             PreparedStatement prepareStatement = connection.prepareStatement(buildSelectTableSql);
-             ResultSet executeQuery = prepareStatement.executeQuery()) {
-            while (executeQuery.next()) {
-                T newInstance = clss.newInstance();
-                List<Field> logFields = RecorderUtil.getLogFields(clss);
-                for (Field field : logFields) {
-                    Col annotation = field.getAnnotation(Col.class);
-                    if (annotation == null) {
-                        continue;
-                    }
-                    Object object = executeQuery.getObject(field.getName());
-                    if (object == null) {
-                        continue;
-                    }
-                    field.set(newInstance, object);
+             PreparedStatement prepareStatement = connection.prepareStatement(buildSelectTableSql)) {
+            RecorderUtil.bindParameters(prepareStatement, parameters);
+            try (ResultSet executeQuery = prepareStatement.executeQuery()) {
+                int[] plan = binder.plan(executeQuery);
+                while (executeQuery.next()) {
+                    result.add(clss.cast(binder.read(executeQuery, plan)));
                 }
-                result.add(newInstance);
             }
         }
+        if (cacheKey != null) {
+            // 缓存的实例不交给调用者，每次返回副本
+            queryCache.put(cacheKey, result, expireAt);
+            return copy(binder, clss, result);
+        }
         return result;
     }
 
-    public long getTaksCount() {
-        return logTaskQueue.size();
-    }
-
-    public long getDoneLogNum() {
-        return doneLogNum.longValue();
-    }
-
-    public long getLostLogNum() {
-        return lostLogNum.longValue();
+    private static <T extends IRecorder> List<T> copy(RecorderBinder binder, Class<T> clss, List<T> rows)
+            throws InstantiationException, IllegalAccessException {
+        List<T> copies = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            copies.add(clss.cast(binder.copy(row)));
+        }
+        return copies;
     }
 
     /**
-     * 开启代理
+     * 以游标方式查询日志，逐行读取并映射，适合导出大量日志
+     * <p>
+     * 使用只进只读的语句和驱动的流式读取(queryFetchSize)，游标独占一个连接直到读完或关闭
      *
-     * @return this
-     * @throws RecorderProxyAlreadyStartException
-     * @throws RecorderCheckException
+     * @param clss    日志类
+     * @param builder 查询构造器
+     * @return 游标(需要关闭)
+     * @throws RecorderProxyStateException
+     * @throws RecorderQueryBuilderException
      * @throws SQLException
-     * @throws ClassNotFoundException
-     * @throws IOException
      */
-    public RecorderProxy startServer() throws RecorderProxyStateException, RecorderCheckException, SQLException,
-            ClassNotFoundException, IOException {
-        if (!isStop) {
+    public <T extends IRecorder> RecorderCursor<T> cursor(Class<T> clss, RecorderQueryBuilder builder)
+            throws RecorderProxyStateException, RecorderQueryBuilderException, SQLException {
+        if (isStop) {
             throw new RecorderProxyStateException("stop");
         }
-        // 初始化任务线程池
-        if (customInsertThreadPool == null) {
-            this.logTaskQueue = new LinkedBlockingQueue<>();
-            this.threadPool = new ThreadPoolExecutor(threadCorePoolSize, threadMaximumPoolSize, 0,
-                    TimeUnit.MILLISECONDS, logTaskQueue, (Runnable runnable) -> {
-                return new Thread(runnable, "RecorderProxy-Insert-" + threadPool.getPoolSize());
-            });
-        } else {
-            this.logTaskQueue = customInsertThreadPool.getQueue();
-            this.threadPool = customInsertThreadPool;
-        }
-        // 检查所有表的变更状况
-        if (checker != null) {
-            // 添加默认日志
-            if (scanPackages != null && scanPackages.length > 0) {
-                for (String packageName : scanPackages) {
-                    checker.registTable(packageName);
-                }
-            }
-            // 启动时，执行表格结构检查
-            try (Connection connection = dataSourceFactory.get().getConnection()) {
-                checker.executeCheck(connection);
-            }
-        }
-        this.isStop = false;
-        return this;
+        String buildSelectTableSql = RecorderUtil.buildSelectTableSqlMYSQL(builder);
+        return RecorderCursor.open(clss, dataSourceFactory.get().getConnection(), buildSelectTableSql,
+                builder.getParameters(), queryFetchSize);
     }
 
     /**
-     * 停止代理
+     * 以流的方式查询日志(见{@link #cursor(Class, RecorderQueryBuilder)})，流关闭时释放连接
      *
-     * @return this
-     * @throws RecorderProxyAlreadyStopException
+     * @param clss    日志类
+     * @param builder 查询构造器
+     * @return 顺序流(需要关闭)
+     * @throws RecorderProxyStateException
+     * @throws RecorderQueryBuilderException
+     * @throws SQLException
      */
-    public RecorderProxy stopServer() throws RecorderProxyStateException {
+    public <T extends IRecorder> Stream<T> stream(Class<T> clss, RecorderQueryBuilder builder)
+            throws RecorderProxyStateException, RecorderQueryBuilderException, SQLException {
+        return cursor(clss, builder).stream();
+    }
+
+    /**
+     * 查询一段时间内的日志，每张相关表在范围查询线程池中用独立连接并发查询，结果按排序字段多路归并
+     *
+     * @param clss       日志类
+     * @param startTime  开始时间戳(包含)
+     * @param endTime    结束时间戳(包含)
+     * @param rangeQuery 条件、排序和分页
+     * @return 日志列表
+     * @throws RecorderProxyStateException
+     * @throws RecorderQueryBuilderException
+     * @throws SQLException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public <T extends IRecorder> List<T> queryRange(Class<T> clss, long startTime, long endTime,
+            RecorderRangeQuery rangeQuery) throws RecorderProxyStateException, RecorderQueryBuilderException,
+            SQLException, InstantiationException, IllegalAccessException {
         if (isStop) {
             throw new RecorderProxyStateException("stop");
         }
-        this.isStop = true;
-        List<Runnable> shutdownNow = threadPool.shutdownNow();
-        // 完成剩余的任务
-        for (Runnable task : shutdownNow) {
+        // 按表名排序，没有排序字段时结果按时间先后连接
+        List<String> tableNames = new ArrayList<>(queryRelativeTables(clss, startTime, endTime));
+        Collections.sort(tableNames);
+        boolean timeBased = TimeBasedLog.class.isAssignableFrom(clss);
+        List<RecorderQueryBuilder> builders = new ArrayList<>();
+        for (String tableName : tableNames) {
             try {
-                task.run();
-                log.info("save log tasks,remain:" + shutdownNow.size());
+                builders.add(rangeQuery.toTableQuery(tableName, timeBased, startTime, endTime));
+            } catch (RecorderQueryBuilderException e) {
+                throw e;
             } catch (Exception e) {
-                log.error(e.getMessage(), e);
+                throw new RecorderQueryBuilderException(e.getMessage());
             }
         }
-        shutdownNow.clear();
-        log.info("db log system shutdone!");
-        return this;
+        RecorderBinder binder = RecorderBinder.of(clss);
+        List<List<T>> parts = new ArrayList<>();
+        if (builders.size() == 1) {
+            parts.add(query(clss, builders.get(0)));
+            return rangeQuery.merge(binder, parts);
+        }
+        List<Future<List<T>>> futures = new ArrayList<>();
+        try {
+            for (RecorderQueryBuilder builder : builders) {
+                futures.add(queryPool.submit(() -> query(clss, builder)));
+            }
+            for (Future<List<T>> future : futures) {
+                parts.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecorderQueryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RecorderProxyStateException) {
+                throw (RecorderProxyStateException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RecorderQueryException(cause);
+        } finally {
+            // 有一张表失败时不再等待其他表
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return rangeQuery.merge(binder, parts);
     }
 
-    public static class RecorderProxyBuilder {
-        // 扫描项目包名(日志结构检查)
-        private Set<String> scanPackages = new HashSet<>();
-        // 任务上限数量
-        private int taskMaxSize;
-        // 任务线程池基本线程数
-        private int threadCorePoolSize;
-        // 任务线程池最大线程数
-        private int threadMaximumPoolSize;
-        // 数据库引擎
-        private String dbEngine;
-        // 编码
-        private String charset;
-        // 自定义线程池
-        private ThreadPoolExecutor customInsertThreadPool;
-        private Supplier<DataSource> dataSourceFactory;
+    public long getTaksCount() {
+        return intake.size();
+    }
 
-        public RecorderProxyBuilder() {
-            this.taskMaxSize = 8000;
-            // 任务线程池基本线程数
-            this.threadCorePoolSize = 3;
-            // 任务线程池最大线程数
-            this.threadMaximumPoolSize = 5;
-            // 数据库引擎
-            this.dbEngine = "myisam";
-            // 编码
-            this.charset = "utf8";
-        }
+    public long getDoneLogNum() {
+        return doneLogNum.longValue();
+    }
 
-        /**
-         * 构建配置
-         *
-         * @return
-         */
-        public RecorderProxy build() {
-            return new RecorderProxy(this);
-        }
+    public long getLostLogNum() {
+        return lostLogNum.longValue();
+    }
 
-        /**
-         * 添加一个需要扫描的包
-         *
-         * @param packageName
-         * @return
-         */
-        public RecorderProxyBuilder addScanPackage(final String... packageNames) {
-            for (final String temp : Objects.requireNonNull(packageNames, "packageNames")) {
-                this.scanPackages.add(Objects.requireNonNull(temp, "packageName"));
-            }
-            return this;
+    public long getBlockedLogNum() {
+        return blockedLogNum.longValue();
+    }
+
+    public long getDroppedNewestLogNum() {
+        return droppedNewestLogNum.longValue();
+    }
+
+    public long getDroppedOldestLogNum() {
+        return droppedOldestLogNum.longValue();
+    }
+
+    public long getSpilledLogNum() {
+        return spilledLogNum.longValue();
+    }
+
+    public long getAggregatedLogNum() {
+        return aggregatedLogNum.longValue();
+    }
+
+    public long getSampledOutLogNum() {
+        return sampledOutLogNum.longValue();
+    }
+
+    public long getRateLimitedLogNum() {
+        return rateLimitedLogNum.longValue();
+    }
+
+    public long getQueryCacheHitNum() {
+        return queryCache == null ? 0 : queryCache.getHitNum();
+    }
+
+    public long getQueryCacheMissNum() {
+        return queryCache == null ? 0 : queryCache.getMissNum();
+    }
+
+    public long getRetriedLogNum() {
+        return retriedLogNum.longValue();
+    }
+
+    public long getDeadLetterLogNum() {
+        return deadLetterLogNum.longValue();
+    }
+
+    /**
+     * 当前批次大小(设置目标延迟时由批次控制动态调整)
+     *
+     * @return
+     */
+    public int getCurrentBatchSize() {
+        return batchController.getBatchSize();
+    }
+
+    /**
+     * 当前批次等待时间(毫秒)
+     *
+     * @return
+     */
+    public double getCurrentLingerMillis() {
+        return batchController.getLingerNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 最近一个统计周期内日志从入队到写入的p99延迟(毫秒)，未设置目标延迟时不统计，恒为0
+     *
+     * @return
+     */
+    public double getWriteLatencyP99Millis() {
+        return batchController.getLatencyP99Nanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 过载或数据库不可用时使用的暂存(未指定时使用暂存文件)
+     *
+     * @return 暂存
+     */
+    RecorderSpillStore getSpillStore() {
+        return spillStore != null ? spillStore : journal;
+    }
+
+    /**
+     * 暂存一条日志，失败时记为丢失
+     *
+     * @param store     暂存
+     * @param tableName 表名
+     * @param alog      日志
+     * @return 是否暂存成功
+     */
+    boolean spill(RecorderSpillStore store, String tableName, IRecorder alog) {
+        try {
+            if (store.spill(tableName, alog)) {
+                spilledLogNum.increment();
+                return true;
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        log.error("spill log failed:" + alog);
+        lost(tableName, alog.getClass(), 1);
+        return false;
+    }
+
+    /**
+     * 回收写完或丢弃的日志实例(未开启回收时忽略)
+     *
+     * @param alog 日志
+     */
+    void recycle(IRecorder alog) {
+        if (pool != null) {
+            pool.release(alog);
+        }
+    }
+
+    void recycle(List<IRecorder> rows) {
+        if (pool != null) {
+            pool.release(rows);
+        }
+    }
+
+    RecorderPool getPool() {
+        return pool;
+    }
+
+    RecorderRetry getRetry() {
+        return retry;
+    }
+
+    RecorderSpillStore getDeadLetterStore() {
+        return deadLetter;
+    }
+
+    void retried(int rows) {
+        retriedLogNum.add(rows);
+    }
+
+    /**
+     * 写入一条死信，失败时记为丢失
+     *
+     * @param store     死信文件
+     * @param tableName 表名
+     * @param alog      日志
+     */
+    void deadLetter(RecorderSpillStore store, String tableName, IRecorder alog) {
+        try {
+            if (store.spill(tableName, alog)) {
+                deadLetterLogNum.increment();
+                return;
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+        log.error("dead letter failed:" + alog);
+        lost(tableName, alog.getClass(), 1);
+    }
+
+    /**
+     * 把死信文件中的日志重新放入入口写入(问题排除后手动调用)
+     * <p>
+     * 入口持续满载超过overloadBlockMillis时暂停，下次调用从暂停的批次继续，该批中已放入入口的日志会再次写入
+     *
+     * @return 重新放入入口的日志数量
+     * @throws RecorderProxyStateException 代理未启动
+     * @throws RecorderTaskOverloadException 入口满载，稍后再试
+     */
+    public int redriveDeadLetters() throws RecorderProxyStateException, RecorderTaskOverloadException {
+        RecorderJournal store = deadLetter;
+        if (isStop || store == null) {
+            throw new RecorderProxyStateException("stop");
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(overloadBlockMillis);
+        try {
+            int count = store.replay(batchSize, new RecorderJournal.ReplayHandler() {
+                @Override
+                public void write(RecorderEvent[] events, int size) throws Exception {
+                    for (int i = 0; i < size; i++) {
+                        if (!intake.offer(events[i].record, events[i].tableName, null, timeoutNanos)) {
+                            throw new RecorderTaskOverloadException("task count is overload,redrive paused");
+                        }
+                    }
+                }
+
+                @Override
+                public void drop(String tableName, Class<? extends IRecorder> clss) {
+                    replayDropped(tableName, clss);
+                }
+            });
+            log.info("dead letters redrived:" + count);
+            return count;
+        } catch (RecorderTaskOverloadException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecorderTaskOverloadException("redrive interrupted");
+        } catch (Exception e) {
+            throw new RecorderTaskOverloadException("redrive paused:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 数据库可用时回放暂存文件
+     */
+    private void replayJournal() {
+        if (!journal.hasPending()) {
+            return;
+        }
+        try (RecorderWriter writer = new RecorderWriter(this, intake)) {
+            int count = journal.replay(batchSize, new RecorderJournal.ReplayHandler() {
+                @Override
+                public void write(RecorderEvent[] events, int size) throws Exception {
+                    writer.replay(events, size);
+                }
+
+                @Override
+                public void drop(String tableName, Class<? extends IRecorder> clss) {
+                    replayDropped(tableName, clss);
+                }
+            });
+            if (count > 0) {
+                log.info("journal replayed logs:" + count);
+            }
+        } catch (Exception e) {
+            log.warn("journal replay paused:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 回放时被丢弃的记录(结构已变化或类无法加载)计为丢失
+     *
+     * @param tableName 目标表名
+     * @param clss      日志类，类无法加载时为null
+     */
+    private void replayDropped(String tableName, Class<? extends IRecorder> clss) {
+        if (clss == null) {
+            lostLogNum.increment();
+        } else {
+            lost(tableName, clss, 1);
+        }
+    }
+
+    boolean isStop() {
+        return isStop;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    long getMaxLingerMillis() {
+        return maxLingerMillis;
+    }
+
+    BatchController getBatchController() {
+        return batchController;
+    }
+
+    InsertMode getInsertMode(Class<? extends IRecorder> clss) {
+        InsertMode mode = classInsertModes.isEmpty() ? insertMode : classInsertModes.getOrDefault(clss, insertMode);
+        if (mode == InsertMode.LOAD_DATA && loadDataUnsupported) {
+            return InsertMode.PREPARED;
+        }
+        return mode;
+    }
+
+    /**
+     * 驱动或服务端不支持LOAD DATA LOCAL INFILE，之后使用PREPARED方式写入
+     *
+     * @param reason 原因
+     */
+    void loadDataUnsupported(String reason) {
+        if (!loadDataUnsupported) {
+            loadDataUnsupported = true;
+            log.warn("LOAD DATA LOCAL INFILE unsupported,fall back to PREPARED insert:" + reason);
+        }
+    }
+
+    boolean isThreadAffineConnection() {
+        return threadAffineConnection;
+    }
+
+    long getConnectionValidateIntervalMillis() {
+        return connectionValidateIntervalMillis;
+    }
+
+    int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    String getPreparedInsertSql(String tableName, Class<? extends IRecorder> clss) {
+        String sql = preparedInsertSqls.get(tableName);
+        if (sql == null) {
+            sql = RecorderUtil.buildPreparedInsertTableSqlMYSQL(tableName, clss);
+            preparedInsertSqls.put(tableName, sql);
+        }
+        return sql;
+    }
+
+    String getLoadDataSql(String tableName, Class<? extends IRecorder> clss) {
+        String sql = loadDataSqls.get(tableName);
+        if (sql == null) {
+            sql = RecorderUtil.buildLoadDataSqlMYSQL(tableName, clss);
+            loadDataSqls.put(tableName, sql);
+        }
+        return sql;
+    }
+
+    String getDbEngine() {
+        return dbEngine;
+    }
+
+    String getCharset() {
+        return charset;
+    }
+
+    Connection getConnection() throws SQLException {
+        return dataSourceFactory.get().getConnection();
+    }
+
+    boolean isTableKnown(String tableName) {
+        return knownTables.contains(tableName);
+    }
+
+    void rememberTable(String tableName) {
+        knownTables.add(tableName);
+    }
+
+    void forgetTable(String tableName) {
+        knownTables.remove(tableName);
+        preparedInsertSqls.remove(tableName);
+        loadDataSqls.remove(tableName);
+    }
+
+    /**
+     * 创建日志表并记录到已知表中
+     *
+     * @param con       数据库链接
+     * @param tableName 数据库表名
+     * @param clss      日志类
+     * @throws Exception
+     */
+    void createTable(Connection con, String tableName, Class<? extends IRecorder> clss) throws Exception {
+        String buildCreateTableSql = RecorderUtil.buildCreateTableSqlMYSQL(tableName, clss, dbEngine, charset);
+        try (PreparedStatement createStatement = con.prepareStatement(buildCreateTableSql)) {
+            // 执行创建表
+            createStatement.executeUpdate();
+        }
+        metrics.ddl();
+        rememberTable(tableName);
+    }
+
+    /**
+     * 为所有滚动日志创建当前周期和提前量之后所在周期的表
+     */
+    void preCreateTables() {
+        long now = preCreateClock.getAsLong();
+        try (Connection con = dataSourceFactory.get().getConnection()) {
+            for (Class<? extends IRecorder> clss : checker.getTableClasses()) {
+                if (Modifier.isAbstract(clss.getModifiers())) {
+                    continue;
+                }
+                try {
+                    IRecorder newInstance = clss.newInstance();
+                    if (newInstance.rollType() == RollType.NEVER_ROLL) {
+                        continue;
+                    }
+                    for (long time : new long[]{now, now + tablePreCreateLeadMillis}) {
+                        String tableName = getLogTableName(newInstance, time);
+                        if (!isTableKnown(tableName)) {
+                            createTable(con, tableName, clss);
+                            log.info("pre create table:" + tableName);
+                        }
+                    }
+                } catch (Exception e) {
+                    log.error("pre create table failed,class:" + clss.getName(), e);
+                }
+            }
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    void done(String tableName, Class<? extends IRecorder> clss, int rows) {
+        doneLogNum.add(rows);
+        metrics.done(tableName, clss, rows);
+    }
+
+    void lost(String tableName, Class<? extends IRecorder> clss, int rows) {
+        lostLogNum.add(rows);
+        metrics.lost(tableName, clss, rows);
+    }
+
+    /**
+     * 运行指标(按表和日志类的计数、延迟和批次直方图)
+     *
+     * @return
+     */
+    public RecorderMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void registerMBean() {
+        if (jmxName == null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(
+                    "org.slingerxv.recorder:type=RecorderProxy,name=" + ObjectName.quote(jmxName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new RecorderProxyMBean(this), name);
+            registeredMBeanName = name;
+        } catch (Exception e) {
+            log.warn("register mbean failed:" + jmxName + "," + e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (registeredMBeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredMBeanName);
+        } catch (Exception e) {
+            log.warn("unregister mbean failed:" + registeredMBeanName + "," + e.getMessage());
+        }
+        registeredMBeanName = null;
+    }
+
+    /**
+     * 开启代理
+     *
+     * @return this
+     * @throws RecorderProxyAlreadyStartException
+     * @throws RecorderCheckException
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     * @throws IOException
+     */
+    public RecorderProxy startServer() throws RecorderProxyStateException, RecorderCheckException, SQLException,
+            ClassNotFoundException, IOException {
+        if (!isStop) {
+            throw new RecorderProxyStateException("stop");
+        }
+        // 初始化任务线程池
+        if (writerLanes > 0) {
+            this.intake = new LaneIntake(writerLanes, taskMaxSize, this::createIntake);
+        } else {
+            this.intake = createIntake(taskMaxSize);
+        }
+        if (customInsertThreadPool == null) {
+            // 分道模式下每条分道独占一个线程
+            int corePoolSize = Math.max(threadCorePoolSize, writerLanes);
+            int maximumPoolSize = Math.max(threadMaximumPoolSize, corePoolSize);
+            this.threadPool = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, 0,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), (Runnable runnable) -> {
+                return new Thread(runnable, "RecorderProxy-Insert-" + threadPool.getPoolSize());
+            });
+        } else {
+            this.threadPool = customInsertThreadPool;
+        }
+        if (queryCache != null) {
+            queryCache.clear();
+        }
+        this.queryPool = new ThreadPoolExecutor(queryThreadPoolSize, queryThreadPoolSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), (Runnable runnable) -> {
+                    Thread thread = new Thread(runnable, "RecorderProxy-Query-" + queryPool.getPoolSize());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // 检查所有表的变更状况
+        if (checker != null) {
+            // 添加默认日志
+            if (scanPackages != null && scanPackages.length > 0) {
+                for (String packageName : scanPackages) {
+                    checker.registTable(packageName);
+                }
+            }
+            // 启动时，执行表格结构检查
+            try (Connection connection = dataSourceFactory.get().getConnection()) {
+                checker.executeCheck(connection);
+                // 记录已经存在的表
+                knownTables.clear();
+                knownTables.addAll(RecorderUtil.getTableNames(connection));
+            }
+        }
+        // 打开死信文件和重试调度
+        if (deadLetterDirectory != null) {
+            this.deadLetter = new RecorderJournal(deadLetterDirectory, journalSegmentSize);
+        }
+        if (retryAttempts > 0) {
+            this.retry = new RecorderRetry(this, retryAttempts, retryBackoffMillis, retryMaxBackoffMillis);
+        }
+        // 打开暂存文件，继续回放上次未完成的段
+        if (journalDirectory != null) {
+            this.journal = new RecorderJournal(journalDirectory, journalSegmentSize);
+            this.journalReplayer = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+                Thread thread = new Thread(runnable, "RecorderProxy-JournalReplayer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journalReplayer.scheduleWithFixedDelay(this::replayJournal, 0, journalReplayIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        // 聚合窗口随日志类首次写入开始
+        aggregators.clear();
+        this.aggregateFlusher = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "RecorderProxy-Aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.isStop = false;
+        registerMBean();
+        // 启动提前建表调度
+        if (tablePreCreateLeadMillis > 0) {
+            long period = Math.max(1000, Math.min(TimeUnit.MINUTES.toMillis(1), tablePreCreateLeadMillis / 2));
+            this.tableCreator = Executors.newSingleThreadScheduledExecutor((Runnable runnable) -> {
+                Thread thread = new Thread(runnable, "RecorderProxy-TableCreator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            tableCreator.scheduleWithFixedDelay(this::preCreateTables, 0, period, TimeUnit.MILLISECONDS);
+        }
+        // 启动批量写入线程
+        if (intake instanceof LaneIntake) {
+            LaneIntake laneIntake = (LaneIntake) intake;
+            if (threadPool.getCorePoolSize() < laneIntake.getLaneNum()) {
+                log.warn("insert thread pool core size:" + threadPool.getCorePoolSize() + " less than writer lanes:"
+                        + laneIntake.getLaneNum() + ",some lanes will wait");
+            }
+            for (int i = 0; i < laneIntake.getLaneNum(); i++) {
+                threadPool.execute(new RecorderWriter(this, laneIntake.lane(i)));
+            }
+        } else {
+            int writerNum = Math.max(1, threadPool.getCorePoolSize());
+            for (int i = 0; i < writerNum; i++) {
+                threadPool.execute(new RecorderWriter(this, intake));
+            }
+        }
+        return this;
+    }
+
+    private RecorderIntake createIntake(int capacity) {
+        if (waitStrategy == null) {
+            return new QueueIntake(capacity);
+        }
+        return new RingBufferIntake(capacity, waitStrategy);
+    }
+
+    /**
+     * 停止代理
+     *
+     * @return this
+     * @throws RecorderProxyAlreadyStopException
+     */
+    public RecorderProxy stopServer() throws RecorderProxyStateException {
+        if (isStop) {
+            throw new RecorderProxyStateException("stop");
+        }
+        this.isStop = true;
+        // 结束所有聚合窗口，合并后的行随队列一起写完
+        aggregateFlusher.shutdownNow();
+        try {
+            aggregateFlusher.awaitTermination(STOP_AWAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Optional<RecorderAggregator> aggregator : aggregators.values()) {
+            aggregator.ifPresent(this::flushAggregate);
+        }
+        if (tableCreator != null) {
+            tableCreator.shutdownNow();
+            tableCreator = null;
+        }
+        queryPool.shutdownNow();
+        // 写入线程会在写完队列中剩余日志后退出
+        threadPool.shutdown();
+        try {
+            if (!threadPool.awaitTermination(STOP_AWAIT_SECONDS, TimeUnit.SECONDS)) {
+                threadPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            threadPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // 完成剩余的任务
+        if (intake.size() > 0) {
+            log.info("save log tasks,remain:" + intake.size());
+            try (RecorderWriter writer = new RecorderWriter(this, intake)) {
+                writer.flushRemaining();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 未到时间的重试做最后一次尝试
+        if (retry != null) {
+            retry.close();
+            retry = null;
+        }
+        // 停止回放并关闭暂存文件
+        if (journal != null) {
+            journalReplayer.shutdown();
+            try {
+                journalReplayer.awaitTermination(STOP_AWAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replayJournal();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+            journal = null;
+            journalReplayer = null;
+        }
+        if (deadLetter != null) {
+            try {
+                deadLetter.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+            deadLetter = null;
+        }
+        unregisterMBean();
+        log.info("db log system shutdone!");
+        return this;
+    }
+
+    public static class RecorderProxyBuilder {
+        // 扫描项目包名(日志结构检查)
+        private Set<String> scanPackages = new HashSet<>();
+        // 任务上限数量
+        private int taskMaxSize;
+        // 环形队列等待策略(为空时使用阻塞队列)
+        private WaitStrategy waitStrategy;
+        // 过载策略
+        private OverloadPolicy overloadPolicy;
+        // 按日志类指定的过载策略
+        private Map<Class<? extends IRecorder>, OverloadPolicy> classOverloadPolicies = new HashMap<>();
+        // 按日志类指定的采样和限流
+        private Map<Class<? extends IRecorder>, RecorderThrottle.Spec> classThrottleSpecs = new HashMap<>();
+        // BLOCK策略最长等待时间(毫秒)
+        private long overloadBlockMillis;
+        // SPILL策略的暂存
+        private RecorderSpillStore spillStore;
+        // 暂存文件目录
+        private File journalDirectory;
+        // 暂存文件每段大小(字节)
+        private int journalSegmentSize;
+        // 暂存回放间隔(毫秒)
+        private long journalReplayIntervalMillis;
+        // 暂时性异常的最大重试次数
+        private int retryAttempts;
+        // 首次重试的等待时间(毫秒)
+        private long retryBackoffMillis;
+        // 重试等待时间上限(毫秒)
+        private long retryMaxBackoffMillis;
+        // 死信文件目录
+        private File deadLetterDirectory;
+        // 按表分道的写入线程数量
+        private int writerLanes;
+        // 每批写入的最大日志数量
+        private int batchSize;
+        // 批次未满时最长等待时间(毫秒)
+        private long maxLingerMillis;
+        // 目标p99写入延迟(毫秒)
+        private long targetLatencyMillis;
+        // 任务线程池基本线程数
+        private int threadCorePoolSize;
+        // 任务线程池最大线程数
+        private int threadMaximumPoolSize;
+        // 提前建表时间(毫秒)
+        private long tablePreCreateLeadMillis;
+        // 提前建表使用的时钟(毫秒)
+        private LongSupplier preCreateClock;
+        // 插入方式
+        private InsertMode insertMode;
+        // 按日志类指定的插入方式
+        private Map<Class<? extends IRecorder>, InsertMode> classInsertModes = new HashMap<>();
+        // 写入线程是否独占连接
+        private boolean threadAffineConnection;
+        // 独占连接空闲多久后使用前做健康检查(毫秒)
+        private long connectionValidateIntervalMillis;
+        // 每个独占连接缓存的预编译语句数量
+        private int statementCacheSize;
+        // 游标查询每次从服务端读取的行数
+        private int queryFetchSize;
+        // 范围查询线程数
+        private int queryThreadPoolSize;
+        // 查询结果缓存条数
+        private int queryCacheSize;
+        // 涉及当前周期的查询结果缓存时间(毫秒)
+        private long queryCacheOpenTtlMillis;
+        // 周期结束多久后表才视为不再变化(毫秒)
+        private long queryCacheClosedDelayMillis;
+        // 数据库引擎
+        private String dbEngine;
+        // 编码
+        private String charset;
+        // 滚动表名使用的时区
+        private ZoneId zoneId;
+        // 自定义线程池
+        private ThreadPoolExecutor customInsertThreadPool;
+        private Supplier<DataSource> dataSourceFactory;
+        // JMX名称
+        private String jmxName;
+        // 每个日志类回收的实例数量
+        private int recorderPoolSize;
+
+        public RecorderProxyBuilder() {
+            this.taskMaxSize = 8000;
+            // 过载策略
+            this.overloadPolicy = OverloadPolicy.REJECT;
+            // BLOCK策略最长等待时间(毫秒)
+            this.overloadBlockMillis = 100;
+            // 暂存文件每段大小(字节)
+            this.journalSegmentSize = 16 * 1024 * 1024;
+            // 暂存回放间隔(毫秒)
+            this.journalReplayIntervalMillis = 1000;
+            // 首次重试的等待时间(毫秒)
+            this.retryBackoffMillis = 100;
+            // 重试等待时间上限(毫秒)
+            this.retryMaxBackoffMillis = 10000;
+            // 每批写入的最大日志数量
+            this.batchSize = 200;
+            // 批次未满时最长等待时间(毫秒)
+            this.maxLingerMillis = 50;
+            // 任务线程池基本线程数
+            this.threadCorePoolSize = 3;
+            // 任务线程池最大线程数
+            this.threadMaximumPoolSize = 5;
+            // 提前建表时间(毫秒)
+            this.tablePreCreateLeadMillis = TimeUnit.MINUTES.toMillis(10);
+            // 提前建表使用的时钟(毫秒)
+            this.preCreateClock = System::currentTimeMillis;
+            // 插入方式
+            this.insertMode = InsertMode.LITERAL;
+            // 写入线程是否独占连接
+            this.threadAffineConnection = true;
+            // 独占连接空闲多久后使用前做健康检查(毫秒)
+            this.connectionValidateIntervalMillis = 5000;
+            // 每个独占连接缓存的预编译语句数量
+            this.statementCacheSize = 64;
+            // 游标查询每次从服务端读取的行数(MySQL驱动的逐行流式读取)
+            this.queryFetchSize = Integer.MIN_VALUE;
+            // 范围查询线程数
+            this.queryThreadPoolSize = 4;
+            // 周期结束多久后表才视为不再变化(毫秒)
+            this.queryCacheClosedDelayMillis = TimeUnit.MINUTES.toMillis(10);
+            // 数据库引擎
+            this.dbEngine = "myisam";
+            // 编码
+            this.charset = "utf8";
+        }
+
+        /**
+         * 构建配置
+         *
+         * @return
+         */
+        public RecorderProxy build() {
+            return new RecorderProxy(this);
+        }
+
+        /**
+         * 添加一个需要扫描的包
+         *
+         * @param packageName
+         * @return
+         */
+        public RecorderProxyBuilder addScanPackage(final String... packageNames) {
+            for (final String temp : Objects.requireNonNull(packageNames, "packageNames")) {
+                this.scanPackages.add(Objects.requireNonNull(temp, "packageName"));
+            }
+            return this;
+        }
+
+        /**
+         * 插入任务数量上限
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder taskMaxSize(final int size) {
+            if (size > 0) {
+                this.taskMaxSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * 日志入口已满时的处理策略(默认REJECT)
+         *
+         * @param policy
+         * @return
+         */
+        public RecorderProxyBuilder overloadPolicy(final OverloadPolicy policy) {
+            this.overloadPolicy = Objects.requireNonNull(policy, "policy");
+            return this;
         }
 
         /**
-         * 插入任务数量上限
+         * 为某个日志类单独指定过载策略(比如流水类日志使用BLOCK或SPILL，调试类日志使用DROP_NEWEST)
+         *
+         * @param clss
+         * @param policy
+         * @return
+         */
+        public RecorderProxyBuilder overloadPolicy(final Class<? extends IRecorder> clss, final OverloadPolicy policy) {
+            this.classOverloadPolicies.put(Objects.requireNonNull(clss, "clss"),
+                    Objects.requireNonNull(policy, "policy"));
+            return this;
+        }
+
+        /**
+         * BLOCK策略最长等待时间(毫秒)
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder overloadBlockMillis(final long millis) {
+            if (millis >= 0) {
+                this.overloadBlockMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 为某个日志类设置令牌桶限流(覆盖类上{@link Throttle}注解的限流设置)，超出的日志在入队前丢弃
+         *
+         * @param clss
+         * @param permitsPerSecond 每秒允许写入的数量，0为不限流
+         * @param burst            允许的突发数量，0时为每秒数量
+         * @return
+         */
+        public RecorderProxyBuilder rateLimit(final Class<? extends IRecorder> clss, final double permitsPerSecond,
+                                              final int burst) {
+            if (permitsPerSecond < 0 || burst < 0) {
+                throw new IllegalArgumentException("permitsPerSecond:" + permitsPerSecond + ",burst:" + burst);
+            }
+            RecorderThrottle.Spec spec = throttleSpec(clss);
+            spec.permitsPerSecond = permitsPerSecond;
+            spec.burst = burst;
+            return this;
+        }
+
+        /**
+         * 为某个日志类设置随机采样(覆盖类上{@link Throttle}注解的采样设置)
+         *
+         * @param clss
+         * @param sampleRate 采样率(0~1)
+         * @return
+         */
+        public RecorderProxyBuilder sampleRate(final Class<? extends IRecorder> clss, final double sampleRate) {
+            return sampleRate(clss, sampleRate, null);
+        }
+
+        /**
+         * 为某个日志类设置按字段值哈希的确定性采样(覆盖类上{@link Throttle}注解的采样设置)
+         *
+         * @param clss
+         * @param sampleRate 采样率(0~1)
+         * @param sampleKey  列(带{@link Col}注解的字段)名，为空时随机采样
+         * @return
+         */
+        public RecorderProxyBuilder sampleRate(final Class<? extends IRecorder> clss, final double sampleRate,
+                                               final String sampleKey) {
+            if (sampleRate < 0 || sampleRate > 1) {
+                throw new IllegalArgumentException("sampleRate out of range:" + sampleRate);
+            }
+            RecorderThrottle.Spec spec = throttleSpec(clss);
+            spec.sampleRate = sampleRate;
+            spec.sampleKey = sampleKey;
+            return this;
+        }
+
+        private RecorderThrottle.Spec throttleSpec(final Class<? extends IRecorder> clss) {
+            return classThrottleSpecs.computeIfAbsent(Objects.requireNonNull(clss, "clss"),
+                    key -> new RecorderThrottle.Spec());
+        }
+
+        /**
+         * SPILL策略使用的暂存
+         *
+         * @param spillStore
+         * @return
+         */
+        public RecorderProxyBuilder spillStore(final RecorderSpillStore spillStore) {
+            this.spillStore = Objects.requireNonNull(spillStore, "spillStore");
+            return this;
+        }
+
+        /**
+         * 开启内存映射暂存文件：数据库不可用时写入失败的日志、以及SPILL策略下(未指定spillStore时)的过载日志写入该目录，
+         * 数据库恢复后在后台按批回放，启动时继续回放上次未完成的部分
+         *
+         * @param directory
+         * @return
+         */
+        public RecorderProxyBuilder journal(final File directory) {
+            this.journalDirectory = Objects.requireNonNull(directory, "directory");
+            return this;
+        }
+
+        /**
+         * 暂存文件每段大小(字节)
          *
          * @param size
          * @return
          */
-        public RecorderProxyBuilder taskMaxSize(final int size) {
+        public RecorderProxyBuilder journalSegmentSize(final int size) {
             if (size > 0) {
-                this.taskMaxSize = size;
+                this.journalSegmentSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * 暂存回放间隔(毫秒)
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder journalReplayIntervalMillis(final long millis) {
+            if (millis > 0) {
+                this.journalReplayIntervalMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 暂时性异常(锁等待超时、死锁、连接断开等)导致写入失败时的最大重试次数，0为不重试。
+         * 重试在单独的线程上按带抖动的指数退避进行，不阻塞写入线程
+         *
+         * @param attempts
+         * @return
+         */
+        public RecorderProxyBuilder retryAttempts(final int attempts) {
+            if (attempts >= 0) {
+                this.retryAttempts = attempts;
+            }
+            return this;
+        }
+
+        /**
+         * 首次重试的等待时间(毫秒)，之后每次翻倍
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder retryBackoffMillis(final long millis) {
+            if (millis > 0) {
+                this.retryBackoffMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 重试等待时间上限(毫秒)
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder retryMaxBackoffMillis(final long millis) {
+            if (millis > 0) {
+                this.retryMaxBackoffMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 开启死信文件：重试耗尽或不可重试的写入失败日志写入该目录(格式同暂存文件)，
+         * 问题排除后通过{@link RecorderProxy#redriveDeadLetters()}重新写入
+         *
+         * @param directory
+         * @return
+         */
+        public RecorderProxyBuilder deadLetter(final File directory) {
+            this.deadLetterDirectory = Objects.requireNonNull(directory, "directory");
+            return this;
+        }
+
+        /**
+         * 使用预分配的无锁环形队列作为日志入口(容量为不小于taskMaxSize的2的幂，满时拒绝)
+         *
+         * @param waitStrategy 写入线程在队列为空时的等待策略
+         * @return
+         */
+        public RecorderProxyBuilder ringBufferIntake(final WaitStrategy waitStrategy) {
+            this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+            return this;
+        }
+
+        /**
+         * 按表分道写入(每张表固定由一个写入线程写入，保证同表顺序并分散表锁竞争)
+         * <p>
+         * 入口容量平均分给各条分道，0为所有写入线程共用一个入口
+         *
+         * @param lanes 分道数量
+         * @return
+         */
+        public RecorderProxyBuilder writerLanes(final int lanes) {
+            if (lanes >= 0) {
+                this.writerLanes = lanes;
+            }
+            return this;
+        }
+
+        /**
+         * 每批写入的最大日志数量(同一张表的日志合并为一条多行INSERT)
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder batchSize(final int size) {
+            if (size > 0) {
+                this.batchSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * 批次未满时最长等待时间(毫秒)
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder maxLingerMillis(final long millis) {
+            if (millis >= 0) {
+                this.maxLingerMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 目标p99写入延迟(毫秒)，设置后按写入耗时和队列积压动态调整批次大小和等待时间，
+         * batchSize和maxLingerMillis作为上限
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder targetLatencyMillis(final long millis) {
+            if (millis >= 0) {
+                this.targetLatencyMillis = millis;
             }
             return this;
         }
@@ -462,6 +1998,152 @@ public class RecorderProxy {
             return this;
         }
 
+        /**
+         * 滚动日志提前建表的时间(毫秒)，在周期切换前提前创建下一周期的表，0为关闭
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder tablePreCreateLeadMillis(final long millis) {
+            if (millis >= 0) {
+                this.tablePreCreateLeadMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 提前建表使用的时钟(毫秒，测试用)
+         *
+         * @param clock
+         * @return
+         */
+        RecorderProxyBuilder preCreateClock(final LongSupplier clock) {
+            this.preCreateClock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /**
+         * 插入方式(PREPARED为带占位符的模板加批量执行，可配合服务端预编译)
+         *
+         * @param insertMode
+         * @return
+         */
+        public RecorderProxyBuilder insertMode(final InsertMode insertMode) {
+            this.insertMode = Objects.requireNonNull(insertMode, "insertMode");
+            return this;
+        }
+
+        /**
+         * 为某个日志类单独指定插入方式(如高频日志使用LOAD_DATA)
+         *
+         * @param clss
+         * @param insertMode
+         * @return
+         */
+        public RecorderProxyBuilder insertMode(final Class<? extends IRecorder> clss, final InsertMode insertMode) {
+            this.classInsertModes.put(Objects.requireNonNull(clss, "clss"),
+                    Objects.requireNonNull(insertMode, "insertMode"));
+            return this;
+        }
+
+        /**
+         * 写入线程是否独占连接(关闭后每批日志从数据源重新获取连接)
+         *
+         * @param threadAffineConnection
+         * @return
+         */
+        public RecorderProxyBuilder threadAffineConnection(final boolean threadAffineConnection) {
+            this.threadAffineConnection = threadAffineConnection;
+            return this;
+        }
+
+        /**
+         * 独占连接空闲多久后使用前做健康检查(毫秒)
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder connectionValidateIntervalMillis(final long millis) {
+            if (millis >= 0) {
+                this.connectionValidateIntervalMillis = millis;
+            }
+            return this;
+        }
+
+        /**
+         * 每个独占连接缓存的预编译语句数量
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder statementCacheSize(final int size) {
+            if (size > 0) {
+                this.statementCacheSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * 游标查询每次从服务端读取的行数，默认为Integer.MIN_VALUE(MySQL驱动逐行流式读取)，
+         * 连接开启useCursorFetch时可设为正数使用服务端游标
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder queryFetchSize(final int size) {
+            this.queryFetchSize = size;
+            return this;
+        }
+
+        /**
+         * 范围查询并发查询的表数量(每个线程同时占用一个连接)
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder queryThreadPoolSize(final int size) {
+            if (size > 0) {
+                this.queryThreadPoolSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * 查询结果缓存条数，默认不缓存
+         * <p>
+         * 开启后query/queryCount只涉及已结束周期的表时缓存结果(最近最少使用淘汰)，
+         * 命中缓存时返回缓存日志实例的副本，调用者可以自由修改返回的列表和日志
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder queryCacheSize(final int size) {
+            this.queryCacheSize = Math.max(0, size);
+            return this;
+        }
+
+        /**
+         * 涉及当前周期的查询结果缓存时间(毫秒)，默认为0不缓存
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder queryCacheOpenTtlMillis(final long millis) {
+            this.queryCacheOpenTtlMillis = Math.max(0, millis);
+            return this;
+        }
+
+        /**
+         * 周期结束多久后表才视为不再变化(毫秒)，在此之前重试和暂存回放仍可能写入，默认10分钟
+         *
+         * @param millis
+         * @return
+         */
+        public RecorderProxyBuilder queryCacheClosedDelayMillis(final long millis) {
+            this.queryCacheClosedDelayMillis = Math.max(0, millis);
+            return this;
+        }
+
         /**
          * 数据库引擎
          *
@@ -484,6 +2166,43 @@ public class RecorderProxy {
             return this;
         }
 
+        /**
+         * 计算滚动表名使用的时区，只影响本代理，默认使用{@link RecorderUtil#setZoneId(ZoneId)}设置的全局时区
+         *
+         * @param zoneId
+         * @return
+         */
+        public RecorderProxyBuilder zoneId(final ZoneId zoneId) {
+            this.zoneId = Objects.requireNonNull(zoneId, "zoneId");
+            return this;
+        }
+
+        /**
+         * 发布到JMX的名称(org.slingerxv.recorder:type=RecorderProxy,name=...)，默认为空不发布，
+         * 同一个JVM中的多个代理需要使用不同的名称
+         *
+         * @param jmxName
+         * @return
+         */
+        public RecorderProxyBuilder jmxName(final String jmxName) {
+            this.jmxName = jmxName;
+            return this;
+        }
+
+        /**
+         * 开启日志实例回收：每个日志类最多管理的实例数量，0为关闭。
+         * 开启后通过{@link RecorderProxy#acquire(Class)}取出的实例在写入完成后回收复用，其他实例不回收
+         *
+         * @param size
+         * @return
+         */
+        public RecorderProxyBuilder recorderPoolSize(final int size) {
+            if (size >= 0) {
+                this.recorderPoolSize = size;
+            }
+            return this;
+        }
+
         /**
          * 自定义一个线程池来处理(threadCorePoolSize和threadMaximumPoolSize将无效)
          *
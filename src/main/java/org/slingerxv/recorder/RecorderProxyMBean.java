@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 发布到JMX的日志代理指标
+ *
+ * @author hank
+ */
+final class RecorderProxyMBean implements RecorderProxyMXBean {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private final RecorderProxy proxy;
+    private final RecorderMetrics metrics;
+
+    RecorderProxyMBean(RecorderProxy proxy) {
+        this.proxy = proxy;
+        this.metrics = proxy.getMetrics();
+    }
+
+    @Override
+    public long getTaskCount() {
+        return proxy.isStop() ? 0 : proxy.getTaksCount();
+    }
+
+    @Override
+    public long getDoneLogNum() {
+        return proxy.getDoneLogNum();
+    }
+
+    @Override
+    public long getLostLogNum() {
+        return proxy.getLostLogNum();
+    }
+
+    @Override
+    public long getBlockedLogNum() {
+        return proxy.getBlockedLogNum();
+    }
+
+    @Override
+    public long getDroppedNewestLogNum() {
+        return proxy.getDroppedNewestLogNum();
+    }
+
+    @Override
+    public long getDroppedOldestLogNum() {
+        return proxy.getDroppedOldestLogNum();
+    }
+
+    @Override
+    public long getSpilledLogNum() {
+        return proxy.getSpilledLogNum();
+    }
+
+    @Override
+    public long getAggregatedLogNum() {
+        return proxy.getAggregatedLogNum();
+    }
+
+    @Override
+    public long getSampledOutLogNum() {
+        return proxy.getSampledOutLogNum();
+    }
+
+    @Override
+    public long getRateLimitedLogNum() {
+        return proxy.getRateLimitedLogNum();
+    }
+
+    @Override
+    public long getRetriedLogNum() {
+        return proxy.getRetriedLogNum();
+    }
+
+    @Override
+    public long getQueryCacheHitNum() {
+        return proxy.getQueryCacheHitNum();
+    }
+
+    @Override
+    public long getQueryCacheMissNum() {
+        return proxy.getQueryCacheMissNum();
+    }
+
+    @Override
+    public long getDeadLetterLogNum() {
+        return proxy.getDeadLetterLogNum();
+    }
+
+    @Override
+    public long getDdlNum() {
+        return metrics.getDdlNum();
+    }
+
+    @Override
+    public int getCurrentBatchSize() {
+        return proxy.getCurrentBatchSize();
+    }
+
+    @Override
+    public double getCurrentLingerMillis() {
+        return proxy.getCurrentLingerMillis();
+    }
+
+    @Override
+    public double getCommitLatencyP50Millis() {
+        return metrics.getCommitLatency().getValueAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getCommitLatencyP99Millis() {
+        return metrics.getCommitLatency().getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getCommitLatencyP999Millis() {
+        return metrics.getCommitLatency().getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getCommitLatencyMaxMillis() {
+        return metrics.getCommitLatency().getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSqlBuildP99Millis() {
+        return metrics.getSqlBuildTime().getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getExecuteP99Millis() {
+        return metrics.getExecuteTime().getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getBatchSizeMean() {
+        return metrics.getBatchSizes().getMean();
+    }
+
+    @Override
+    public long getBatchSizeP99() {
+        return metrics.getBatchSizes().getValueAtPercentile(99);
+    }
+
+    @Override
+    public Map<String, Long> getTableDoneLogNums() {
+        return toMap(metrics.getTableCounters(), Function.identity(), RecorderCounters::getDoneLogNum);
+    }
+
+    @Override
+    public Map<String, Long> getTableLostLogNums() {
+        return toMap(metrics.getTableCounters(), Function.identity(), RecorderCounters::getLostLogNum);
+    }
+
+    @Override
+    public Map<String, Long> getClassDoneLogNums() {
+        return toMap(metrics.getClassCounters(), Class::getName, RecorderCounters::getDoneLogNum);
+    }
+
+    private static <K> Map<String, Long> toMap(Map<K, RecorderCounters> counters, Function<K, String> key,
+                                               ToLongFunction<RecorderCounters> value) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<K, RecorderCounters> entry : counters.entrySet()) {
+            result.put(key.apply(entry.getKey()), value.applyAsLong(entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.Map;
+
+/**
+ * 日志代理的JMX指标
+ * <p>
+ * 延迟和耗时的单位为毫秒
+ *
+ * @author hank
+ */
+public interface RecorderProxyMXBean {
+
+    long getTaskCount();
+
+    long getDoneLogNum();
+
+    long getLostLogNum();
+
+    long getBlockedLogNum();
+
+    long getDroppedNewestLogNum();
+
+    long getDroppedOldestLogNum();
+
+    long getSpilledLogNum();
+
+    long getAggregatedLogNum();
+
+    long getSampledOutLogNum();
+
+    long getRateLimitedLogNum();
+
+    long getRetriedLogNum();
+
+    long getDeadLetterLogNum();
+
+    long getQueryCacheHitNum();
+
+    long getQueryCacheMissNum();
+
+    long getDdlNum();
+
+    int getCurrentBatchSize();
+
+    double getCurrentLingerMillis();
+
+    double getCommitLatencyP50Millis();
+
+    double getCommitLatencyP99Millis();
+
+    double getCommitLatencyP999Millis();
+
+    double getCommitLatencyMaxMillis();
+
+    double getSqlBuildP99Millis();
+
+    double getExecuteP99Millis();
+
+    double getBatchSizeMean();
+
+    long getBatchSizeP99();
+
+    /**
+     * 按表名统计的写入成功数量(滚动表只保留当前和上一周期)
+     */
+    Map<String, Long> getTableDoneLogNums();
+
+    /**
+     * 按表名统计的丢失数量(滚动表只保留当前和上一周期)
+     */
+    Map<String, Long> getTableLostLogNums();
+
+    /**
+     * 按日志类名统计的写入成功数量
+     */
+    Map<String, Long> getClassDoneLogNums();
+}
@@ -18,8 +18,10 @@ package org.slingerxv.recorder;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * 日志查询构造器
@@ -34,6 +36,12 @@ public class RecorderQueryBuilder {
     private StringBuilder groupBySb = new StringBuilder();
     private String limit;
     private List<RecorderQueryBuilder> unions = new ArrayList<>();
+    // 查询涉及的表名和子查询
+    private Set<String> sourceTables = new LinkedHashSet<>();
+    private List<RecorderQueryBuilder> subQueries = new ArrayList<>();
+    // 子查询和条件的参数(按在语句中出现的顺序)
+    private List<Object> tableParameters = new ArrayList<>();
+    private List<Object> whereParameters = new ArrayList<>();
 
     public RecorderQueryBuilder unionAll(RecorderQueryBuilder builder) throws Exception {
         if (builder.hashCode() == hashCode()) {
@@ -51,6 +59,7 @@ public class RecorderQueryBuilder {
     public RecorderQueryBuilder tables(Collection<String> tables) {
         for (String tb : Objects.requireNonNull(tables)) {
             tableNames.append(tb).append(",");
+            sourceTables.add(tb);
         }
         return this;
     }
@@ -59,19 +68,24 @@ public class RecorderQueryBuilder {
         if (table.hashCode() == hashCode()) {
             throw new RecorderQueryBuilderException("can not add self!");
         }
-        tableNames.append("(").append(table.build()).append(") as atlas_").append(Integer.toHexString(table.hashCode())).append(",");
+        // 别名按子查询的位置生成，值不同的查询语句相同
+        tableNames.append("(").append(table.build()).append(") as atlas_").append(subQueries.size()).append(",");
+        subQueries.add(table);
+        tableParameters.addAll(table.getParameters());
         return this;
     }
 
     public RecorderQueryBuilder tables(String... tables) {
         for (String table : Objects.requireNonNull(tables)) {
             tableNames.append(Objects.requireNonNull(table)).append(",");
+            sourceTables.add(table);
         }
         return this;
     }
 
     public RecorderQueryBuilder where(WhereConditionBuilder condition) throws Exception {
         where = condition.build();
+        whereParameters = new ArrayList<>(condition.parameters);
         return this;
     }
 
@@ -90,6 +104,35 @@ public class RecorderQueryBuilder {
         return this;
     }
 
+    /**
+     * 收集查询涉及的所有表名(包括子查询和union)
+     *
+     * @param tables 表名集合
+     */
+    void collectTables(Set<String> tables) {
+        tables.addAll(sourceTables);
+        for (RecorderQueryBuilder subQuery : subQueries) {
+            subQuery.collectTables(tables);
+        }
+        for (RecorderQueryBuilder union : unions) {
+            union.collectTables(tables);
+        }
+    }
+
+    /**
+     * 语句中?占位符对应的参数，顺序与{@link #build()}中的占位符一致
+     *
+     * @return 参数列表
+     */
+    public List<Object> getParameters() {
+        List<Object> parameters = new ArrayList<>(tableParameters);
+        parameters.addAll(whereParameters);
+        for (RecorderQueryBuilder union : unions) {
+            parameters.addAll(union.getParameters());
+        }
+        return parameters;
+    }
+
     public String build() throws RecorderQueryBuilderException {
         String source = "select {0} from {1} {2} {3} {4} {5}";
         if (selections.length() == 0) {
@@ -122,10 +165,15 @@ public class RecorderQueryBuilder {
         return format;
     }
 
+    /**
+     * 条件构造器，条件的值以?占位符作为语句参数绑定(字符串不需要加引号，带引号的值会被拒绝)，
+     * 需要与列或函数比较时使用xxxExpr系列方法原样拼接表达式
+     */
     public static final class WhereConditionBuilder {
         private StringBuilder sb = new StringBuilder();
         private int qouteSignal = 0;
         private int contactSignal = 0;
+        private List<Object> parameters = new ArrayList<>();
 
         public WhereConditionBuilder qouteStart() {
             sb.append("(");
@@ -158,8 +206,8 @@ public class RecorderQueryBuilder {
         }
 
         public WhereConditionBuilder lt(String fieldName, Object value, boolean isClosure) {
-            sb.append(Objects.requireNonNull(fieldName)).append(" <").append(isClosure ? "= " : " ")
-                    .append(Objects.requireNonNull(value).toString());
+            sb.append(Objects.requireNonNull(fieldName)).append(" <").append(isClosure ? "= " : " ").append("?");
+            parameters.add(checkValue(value));
             if (contactSignal > 0) {
                 --contactSignal;
             }
@@ -167,8 +215,8 @@ public class RecorderQueryBuilder {
         }
 
         public WhereConditionBuilder gt(String fieldName, Object value, boolean isClosure) {
-            sb.append(Objects.requireNonNull(fieldName)).append(" >").append(isClosure ? "= " : " ")
-                    .append(Objects.requireNonNull(value).toString());
+            sb.append(Objects.requireNonNull(fieldName)).append(" >").append(isClosure ? "= " : " ").append("?");
+            parameters.add(checkValue(value));
             if (contactSignal > 0) {
                 --contactSignal;
             }
@@ -176,7 +224,8 @@ public class RecorderQueryBuilder {
         }
 
         public WhereConditionBuilder eq(String fieldName, Object value) {
-            sb.append(Objects.requireNonNull(fieldName)).append(" = ").append(Objects.requireNonNull(value).toString());
+            sb.append(Objects.requireNonNull(fieldName)).append(" = ?");
+            parameters.add(checkValue(value));
             if (contactSignal > 0) {
                 --contactSignal;
             }
@@ -184,8 +233,8 @@ public class RecorderQueryBuilder {
         }
 
         public WhereConditionBuilder notEq(String fieldName, Object value) {
-            sb.append(Objects.requireNonNull(fieldName)).append(" != ")
-                    .append(Objects.requireNonNull(value).toString());
+            sb.append(Objects.requireNonNull(fieldName)).append(" != ?");
+            parameters.add(checkValue(value));
             if (contactSignal > 0) {
                 --contactSignal;
             }
@@ -193,8 +242,70 @@ public class RecorderQueryBuilder {
         }
 
         public WhereConditionBuilder like(String fieldName, Object value, boolean left, boolean right) {
-            sb.append(Objects.requireNonNull(fieldName)).append(" like '").append(left ? "%" : "")
-                    .append(value == null ? "" : value.toString()).append(right ? "%" : "").append("'");
+            sb.append(Objects.requireNonNull(fieldName)).append(" like ?");
+            parameters.add((left ? "%" : "") + (value == null ? "" : checkValue(value).toString()) + (right ? "%" : ""));
+            if (contactSignal > 0) {
+                --contactSignal;
+            }
+            return this;
+        }
+
+        /**
+         * 与表达式比较，表达式原样拼接(如列名、函数)，不能包含外部输入
+         */
+        public WhereConditionBuilder ltExpr(String fieldName, String expression, boolean isClosure) {
+            return expr(fieldName, isClosure ? " <= " : " < ", expression);
+        }
+
+        /**
+         * 与表达式比较，表达式原样拼接(如列名、函数)，不能包含外部输入
+         */
+        public WhereConditionBuilder gtExpr(String fieldName, String expression, boolean isClosure) {
+            return expr(fieldName, isClosure ? " >= " : " > ", expression);
+        }
+
+        /**
+         * 与表达式比较，表达式原样拼接(如列名、函数)，不能包含外部输入
+         */
+        public WhereConditionBuilder eqExpr(String fieldName, String expression) {
+            return expr(fieldName, " = ", expression);
+        }
+
+        /**
+         * 与表达式比较，表达式原样拼接(如列名、函数)，不能包含外部输入
+         */
+        public WhereConditionBuilder notEqExpr(String fieldName, String expression) {
+            return expr(fieldName, " != ", expression);
+        }
+
+        private WhereConditionBuilder expr(String fieldName, String operator, String expression) {
+            sb.append(Objects.requireNonNull(fieldName)).append(operator).append(Objects.requireNonNull(expression));
+            if (contactSignal > 0) {
+                --contactSignal;
+            }
+            return this;
+        }
+
+        /**
+         * 值按参数绑定，旧写法里手动加了引号的字符串会被当成字面量比较导致结果错误，这里直接拒绝
+         */
+        private static Object checkValue(Object value) {
+            Objects.requireNonNull(value);
+            if (value instanceof String) {
+                String str = (String) value;
+                if (str.length() >= 2 && str.charAt(0) == '\'' && str.charAt(str.length() - 1) == '\'') {
+                    throw new IllegalArgumentException("value is bound as parameter, remove the quotes or use xxxExpr: " + str);
+                }
+            }
+            return value;
+        }
+
+        /**
+         * 把另一个条件整体加上括号嵌入
+         */
+        WhereConditionBuilder nest(WhereConditionBuilder condition) throws Exception {
+            sb.append("(").append(condition.build()).append(")");
+            parameters.addAll(condition.parameters);
             if (contactSignal > 0) {
                 --contactSignal;
             }
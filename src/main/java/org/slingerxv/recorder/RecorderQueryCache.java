@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果缓存(按日志类、SQL和参数，最近最少使用淘汰)
+ * <p>
+ * 只涉及已结束周期的表的结果不再变化，一直缓存到被淘汰；涉及当前周期的结果按过期时间缓存
+ *
+ * @author hank
+ */
+final class RecorderQueryCache {
+    private final Map<Key, Entry> entries;
+    private final LongAdder hitNum = new LongAdder();
+    private final LongAdder missNum = new LongAdder();
+
+    RecorderQueryCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的结果
+     *
+     * @param key 查询
+     * @return 没有或已过期时返回空
+     */
+    Object get(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expireAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                missNum.increment();
+                return null;
+            }
+            hitNum.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * 缓存结果
+     *
+     * @param key      查询
+     * @param value    结果(不再修改，不能直接交给调用者)
+     * @param expireAt 过期时间戳(Long.MAX_VALUE为不过期)
+     */
+    void put(Key key, Object value, long expireAt) {
+        synchronized (entries) {
+            entries.put(key, new Entry(value, expireAt));
+        }
+    }
+
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHitNum() {
+        return hitNum.sum();
+    }
+
+    long getMissNum() {
+        return missNum.sum();
+    }
+
+    /**
+     * 缓存键，参数按值和类型比较(1和1L是不同的查询)
+     */
+    static final class Key {
+        private final Class<?> clss;
+        // 条数查询与列表查询的语句相同
+        private final boolean count;
+        private final String sql;
+        private final List<Object> parameters;
+        private final List<Class<?>> parameterTypes;
+        private final int hash;
+
+        Key(Class<?> clss, boolean count, String sql, List<Object> parameters) {
+            this.clss = clss;
+            this.count = count;
+            this.sql = sql;
+            this.parameters = new ArrayList<>(parameters);
+            this.parameterTypes = new ArrayList<>(parameters.size());
+            for (Object parameter : parameters) {
+                parameterTypes.add(parameter == null ? null : parameter.getClass());
+            }
+            this.hash = Objects.hash(clss, count, sql, this.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && clss == other.clss && count == other.count && sql.equals(other.sql)
+                    && parameterTypes.equals(other.parameterTypes) && parameters.equals(other.parameters);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 游标读取查询结果失败(迭代器和流中无法抛出受检异常)
+ * 
+ * @author hank
+ *
+ */
+public class RecorderQueryException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RecorderQueryException(Throwable cause) {
+		super(cause.getMessage(), cause);
+	}
+}
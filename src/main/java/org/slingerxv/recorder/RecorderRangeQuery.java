@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import org.slingerxv.recorder.RecorderQueryBuilder.WhereConditionBuilder;
+
+/**
+ * 跨滚动表的范围查询条件(见{@link RecorderProxy#queryRange(Class, long, long, RecorderRangeQuery)})
+ * <p>
+ * 每张表单独查询，排序和limit下推到每张表(每张表最多取start+size行)，结果再按排序字段做多路归并。
+ * 归并时按字段的Java自然顺序比较(字符串区分大小写，null在前)，与数据库排序规则不同时顺序以此为准
+ *
+ * @author hank
+ */
+public final class RecorderRangeQuery {
+    private WhereConditionBuilder where;
+    private final List<String> orderFields = new ArrayList<>();
+    private final List<Boolean> orderDescs = new ArrayList<>();
+    private int start;
+    private int size = -1;
+
+    public RecorderRangeQuery where(WhereConditionBuilder condition) {
+        this.where = Objects.requireNonNull(condition);
+        return this;
+    }
+
+    public RecorderRangeQuery orderBy(String fieldName, boolean desc) {
+        orderFields.add(Objects.requireNonNull(fieldName));
+        orderDescs.add(desc);
+        return this;
+    }
+
+    public RecorderRangeQuery limit(int start, int size) {
+        if (start < 0 || size < 0) {
+            throw new IllegalArgumentException("start:" + start + ",size:" + size);
+        }
+        this.start = start;
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * 生成单张表的查询，时间日志按createTime筛选时间范围
+     *
+     * @param tableName 表名
+     * @param timeBased 是否为时间日志
+     * @param startTime 开始时间戳(包含)
+     * @param endTime   结束时间戳(包含)
+     * @return 查询构造器
+     * @throws Exception
+     */
+    RecorderQueryBuilder toTableQuery(String tableName, boolean timeBased, long startTime, long endTime)
+            throws Exception {
+        RecorderQueryBuilder builder = new RecorderQueryBuilder().select("*").tables(tableName);
+        WhereConditionBuilder condition = new WhereConditionBuilder();
+        if (timeBased) {
+            condition.gt("createTime", startTime, true).and().lt("createTime", endTime, true);
+            if (where != null) {
+                condition.and();
+            }
+        }
+        if (where != null) {
+            condition.nest(where);
+        }
+        if (timeBased || where != null) {
+            builder.where(condition);
+        }
+        for (int i = 0; i < orderFields.size(); i++) {
+            builder.orderBy(orderFields.get(i), orderDescs.get(i));
+        }
+        if (size >= 0) {
+            builder.limit(0, start + size);
+        }
+        return builder;
+    }
+
+    /**
+     * 归并各表结果(各表结果已按排序字段有序)，没有排序字段时按表的顺序连接
+     *
+     * @param binder 日志类绑定
+     * @param parts  各表结果
+     * @return 取limit范围后的结果
+     * @throws RecorderQueryBuilderException 排序字段不是日志列
+     */
+    <T extends IRecorder> List<T> merge(RecorderBinder binder, List<List<T>> parts)
+            throws RecorderQueryBuilderException {
+        Comparator<T> comparator = comparator(binder);
+        int end = size < 0 ? Integer.MAX_VALUE : start + size;
+        List<T> result = new ArrayList<>();
+        int index = 0;
+        if (comparator == null) {
+            for (List<T> part : parts) {
+                for (T alog : part) {
+                    if (index >= end) {
+                        return result;
+                    }
+                    if (index++ >= start) {
+                        result.add(alog);
+                    }
+                }
+            }
+            return result;
+        }
+        // 堆中放每张表当前最小的行
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<T> part : parts) {
+            if (!part.isEmpty()) {
+                heads.add(new Head<>(part));
+            }
+        }
+        while (!heads.isEmpty() && index < end) {
+            Head<T> head = heads.poll();
+            if (index++ >= start) {
+                result.add(head.current());
+            }
+            if (++head.index < head.rows.size()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private <T extends IRecorder> Comparator<T> comparator(RecorderBinder binder)
+            throws RecorderQueryBuilderException {
+        Comparator<T> comparator = null;
+        for (int i = 0; i < orderFields.size(); i++) {
+            RecorderBinder.Column column = binder.getColumn(orderFields.get(i));
+            if (column == null) {
+                throw new RecorderQueryBuilderException("unknown order field:" + orderFields.get(i));
+            }
+            Comparator<T> next = Comparator.comparing(alog -> (Comparable) column.get(alog),
+                    Comparator.nullsFirst(Comparator.naturalOrder()));
+            if (orderDescs.get(i)) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private static final class Head<T> {
+        private final List<T> rows;
+        private int index;
+
+        private Head(List<T> rows) {
+            this.rows = rows;
+        }
+
+        private T current() {
+            return rows.get(index);
+        }
+    }
+}
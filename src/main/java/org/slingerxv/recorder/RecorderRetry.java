@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写入失败的重试调度
+ * <p>
+ * 暂时性异常(锁等待超时、死锁、连接断开等)导致写入失败的一批日志按带抖动的指数退避延迟后，
+ * 由单独的重试线程重新写入，不占用写入线程。重试耗尽后交给写入失败的处理(死信或记为丢失)
+ *
+ * @author hank
+ */
+final class RecorderRetry {
+    private static Logger log = LoggerFactory.getLogger(RecorderRetry.class);
+    private final RecorderProxy proxy;
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final long maxBackoffNanos;
+    private final ScheduledThreadPoolExecutor scheduler;
+    // 只在重试线程(及停止后的调用线程)上使用
+    private final RecorderWriter writer;
+
+    RecorderRetry(RecorderProxy proxy, int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+        this.proxy = proxy;
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(backoffMillis, maxBackoffMillis));
+        this.scheduler = new ScheduledThreadPoolExecutor(1, (Runnable runnable) -> {
+            Thread thread = new Thread(runnable, "RecorderProxy-Retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new RecorderWriter(proxy, null);
+    }
+
+    /**
+     * 安排一批日志的重试
+     *
+     * @param tableName 表名
+     * @param rows      日志(调用方不再持有)
+     * @param acks      需要确认的日志(可为空)
+     * @param attempt   本次是第几次重试(从1开始)
+     * @return 是否已安排，重试耗尽或已停止时返回false
+     */
+    boolean schedule(String tableName, List<IRecorder> rows, List<RecorderAck> acks, int attempt) {
+        if (attempt > maxAttempts) {
+            return false;
+        }
+        long delay = backoff(attempt);
+        try {
+            scheduler.schedule(new Task(tableName, rows, acks, attempt), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        proxy.retried(rows.size());
+        log.warn("retry logs,table:" + tableName + ",rows:" + rows.size() + ",attempt:" + attempt + ",delay(ms):"
+                + TimeUnit.NANOSECONDS.toMillis(delay));
+        return true;
+    }
+
+    /**
+     * 第attempt次重试前的等待：min(上限, 基础时间*2^(attempt-1))，在其后一半范围内随机抖动，
+     * 避免大量失败的批次同时重试
+     *
+     * @param attempt 第几次重试
+     * @return 等待时间(纳秒)
+     */
+    long backoff(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        long delay = backoffNanos << shift;
+        if (delay <= 0 || delay > maxBackoffNanos) {
+            delay = maxBackoffNanos;
+        }
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /**
+     * 停止重试：未到时间的重试立即在当前线程做最后一次尝试，失败的交给写入失败的处理
+     */
+    void close() {
+        List<Runnable> remain = scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(RecorderProxy.STOP_AWAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!remain.isEmpty()) {
+            log.info("retry logs before stop,batches:" + remain.size());
+        }
+        for (Runnable runnable : remain) {
+            runnable.run();
+        }
+        writer.close();
+    }
+
+    private final class Task implements Runnable {
+        private final String tableName;
+        private final List<IRecorder> rows;
+        private final List<RecorderAck> acks;
+        private final int attempt;
+
+        Task(String tableName, List<IRecorder> rows, List<RecorderAck> acks, int attempt) {
+            this.tableName = tableName;
+            this.rows = rows;
+            this.acks = acks;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            writer.retry(tableName, rows, acks, attempt);
+        }
+    }
+}
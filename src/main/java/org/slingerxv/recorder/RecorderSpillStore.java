@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志暂存(入口过载或数据库不可用时接收日志，恢复后再写入数据库)
+ *
+ * @author hank
+ */
+public interface RecorderSpillStore {
+
+    /**
+     * 暂存一条日志
+     *
+     * @param tableName 目标表名
+     * @param record    日志
+     * @return 是否暂存成功
+     */
+    boolean spill(String tableName, IRecorder record);
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个日志类的采样和限流
+ * <p>
+ * 限流为令牌桶(按GCRA以一个理论到达时间实现，无锁)，采样为随机采样或按字段值哈希的确定性采样
+ *
+ * @author hank
+ */
+final class RecorderThrottle {
+    // 采样率换算为32位无符号哈希的阈值
+    private static final double HASH_RANGE = 4294967296.0;
+    // 相邻两个令牌的间隔(纳秒)，0为不限流
+    private final long intervalNanos;
+    // 允许的突发对应的提前量(纳秒)
+    private final long burstNanos;
+    // 下一个令牌的理论到达时间
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+    private final double sampleRate;
+    private final long sampleThreshold;
+    // 确定性采样的列，为空时随机采样
+    private final RecorderBinder.Column sampleKey;
+
+    private RecorderThrottle(double permitsPerSecond, int burst, double sampleRate, RecorderBinder.Column sampleKey) {
+        if (permitsPerSecond > 0) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            int capacity = burst > 0 ? burst : Math.max(1, (int) permitsPerSecond);
+            this.burstNanos = intervalNanos * (capacity - 1);
+        } else {
+            this.intervalNanos = 0;
+            this.burstNanos = 0;
+        }
+        this.sampleRate = sampleRate;
+        this.sampleThreshold = (long) (sampleRate * HASH_RANGE);
+        this.sampleKey = sampleKey;
+    }
+
+    /**
+     * 按类上的注解和代理中的设置创建
+     *
+     * @param clss     日志类
+     * @param override 代理中的设置(可为空)，设置过的项覆盖注解
+     * @return 没有任何采样和限流时返回空
+     */
+    static RecorderThrottle of(Class<? extends IRecorder> clss, Spec override) {
+        Throttle annotation = clss.getAnnotation(Throttle.class);
+        double permitsPerSecond = annotation == null ? 0 : annotation.permitsPerSecond();
+        int burst = annotation == null ? 0 : annotation.burst();
+        double sampleRate = annotation == null ? 1 : annotation.sampleRate();
+        String sampleKey = annotation == null ? "" : annotation.sampleKey();
+        if (override != null) {
+            if (override.permitsPerSecond >= 0) {
+                permitsPerSecond = override.permitsPerSecond;
+                burst = override.burst;
+            }
+            if (override.sampleRate >= 0) {
+                sampleRate = override.sampleRate;
+                sampleKey = override.sampleKey;
+            }
+        }
+        if (permitsPerSecond <= 0 && sampleRate >= 1) {
+            return null;
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate out of range:" + sampleRate + "," + clss.getName());
+        }
+        RecorderBinder.Column keyColumn = null;
+        if (sampleKey != null && !sampleKey.isEmpty()) {
+            keyColumn = RecorderBinder.of(clss).getColumn(sampleKey);
+            if (keyColumn == null) {
+                throw new IllegalArgumentException("sampleKey not found:" + sampleKey + "," + clss.getName());
+            }
+        }
+        return new RecorderThrottle(permitsPerSecond, burst, sampleRate, keyColumn);
+    }
+
+    /**
+     * 是否被采样保留
+     *
+     * @param alog 日志
+     * @return
+     */
+    boolean sample(IRecorder alog) {
+        if (sampleRate >= 1) {
+            return true;
+        }
+        if (sampleKey == null) {
+            return ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+        return (mix(Objects.hashCode(sampleKey.get(alog))) & 0xFFFFFFFFL) < sampleThreshold;
+    }
+
+    /**
+     * 获取一个令牌
+     *
+     * @return 是否获取成功(失败时不消耗令牌)
+     */
+    boolean tryAcquire() {
+        if (intervalNanos == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        for (; ; ) {
+            long arrival = theoreticalArrival.get();
+            long start = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+            if (start - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 打散哈希值(murmur3的finalizer)，避免连续的整数键落在同一区间
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * 代理中按类设置的采样和限流(负数表示未设置，使用注解中的值)
+     */
+    static final class Spec {
+        double permitsPerSecond = -1;
+        int burst;
+        double sampleRate = -1;
+        String sampleKey;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志被采样掉或限流，没有写入(异步写入的确认)
+ * <p>
+ * 按策略主动丢弃，调用方不应重试。为避免限流时的开销不记录堆栈
+ * 
+ * @author hank
+ *
+ */
+public class RecorderThrottledException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+	private final boolean sampledOut;
+
+	public RecorderThrottledException(Class<? extends IRecorder> clss, boolean sampledOut) {
+		super((sampledOut ? "log sampled out:" : "log rate limited:") + clss.getName(), null, false, false);
+		this.sampledOut = sampledOut;
+	}
+
+	/**
+	 * 是否因采样丢弃(否则为限流)
+	 * 
+	 * @return
+	 */
+	public boolean isSampledOut() {
+		return sampledOut;
+	}
+}
@@ -15,22 +15,39 @@
  */
 package org.slingerxv.recorder;
 
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -45,8 +62,20 @@ import org.slf4j.LoggerFactory;
 public class RecorderUtil {
     private static Logger log = LoggerFactory.getLogger(RecorderUtil.class);
     private static final String PRIMARY_KEY = "`pk_id`";
+    private static final int ER_NO_SUCH_TABLE = 1146;
+    // 服务端不允许LOAD DATA LOCAL
+    private static final int ER_NOT_ALLOWED_COMMAND = 1148;
+    private static final int ER_CLIENT_LOCAL_FILES_DISABLED = 3948;
+    // MySQL锁等待超时
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    // MySQL死锁
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final String LOCAL_INFILE_METHOD = "setLocalInfileInputStream";
+    private static Map<Class<?>, Optional<Method>> localInfileMethodCache = new ConcurrentHashMap<>();
     private static Map<Class<? extends IRecorder>, List<Field>> logFieldCache = new ConcurrentHashMap<>();
     private static Map<SQLType, Set<SQLType>> CHANGE_ALLOW_MAP = new HashMap<>();
+    private static Map<Class<? extends IRecorder>, TableNameResolver> tableNameResolverCache = new ConcurrentHashMap<>();
+    private static volatile ZoneId zoneId = ZoneId.systemDefault();
 
     private RecorderUtil() {
     }
@@ -122,6 +151,78 @@ public class RecorderUtil {
         return sql;
     }
 
+    /**
+     * 是否为表不存在的异常(MySQL错误码1146)
+     *
+     * @param e 数据库异常
+     * @return
+     */
+    public static boolean isTableNotExist(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (next.getErrorCode() == ER_NO_SUCH_TABLE || "42S02".equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为数据库连接类的异常(无法获取连接、连接断开等，SQLState以08开头)
+     *
+     * @param e 异常
+     * @return
+     */
+    public static boolean isConnectionFailure(Throwable e) {
+        for (Throwable next = e; next != null; next = next.getCause()) {
+            if (next instanceof SQLTransientConnectionException || next instanceof SQLNonTransientConnectionException
+                    || next instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (next instanceof SQLException) {
+                String sqlState = ((SQLException) next).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    return true;
+                }
+            }
+            if (next.getCause() == next) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为重试可能成功的暂时性异常(连接类异常、锁等待超时、死锁及SQLState以40开头的事务回滚)
+     *
+     * @param e 异常
+     * @return
+     */
+    public static boolean isTransient(Throwable e) {
+        if (isConnectionFailure(e)) {
+            return true;
+        }
+        for (Throwable next = e; next != null; next = next.getCause()) {
+            if (next instanceof SQLTransientException) {
+                return true;
+            }
+            if (next instanceof SQLException) {
+                for (SQLException sqlException = (SQLException) next; sqlException != null;
+                     sqlException = sqlException.getNextException()) {
+                    int errorCode = sqlException.getErrorCode();
+                    String sqlState = sqlException.getSQLState();
+                    if (errorCode == ER_LOCK_WAIT_TIMEOUT || errorCode == ER_LOCK_DEADLOCK
+                            || (sqlState != null && sqlState.startsWith("40"))) {
+                        return true;
+                    }
+                }
+            }
+            if (next.getCause() == next) {
+                break;
+            }
+        }
+        return false;
+    }
+
     /**
      * 构建查找数量SQL
      *
@@ -136,6 +237,57 @@ public class RecorderUtil {
         return build;
     }
 
+    /**
+     * 按顺序绑定查询构造器中的参数，按值的类型选择setter(同{@link #setParameter})，不交给驱动推断
+     *
+     * @param statement  语句
+     * @param parameters 参数(见{@link RecorderQueryBuilder#getParameters()})
+     * @throws SQLException
+     */
+    static void bindParameters(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            setParameter(statement, i + 1, getParameterType(value), value);
+        }
+    }
+
+    /**
+     * 按值的Java类型推断绑定用的列类型，无法推断的按字符串绑定(枚举按名称)
+     *
+     * @param value 值
+     * @return 列类型
+     */
+    static SQLType getParameterType(Object value) {
+        if (value instanceof Long) {
+            return SQLType.BIGINT;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return SQLType.INT;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return SQLType.DOUBLE;
+        }
+        if (value instanceof BigDecimal) {
+            return SQLType.DECIMAL;
+        }
+        if (value instanceof Boolean) {
+            return SQLType.BIT;
+        }
+        if (value instanceof byte[]) {
+            return SQLType.VARBINARY;
+        }
+        if (value instanceof java.sql.Date) {
+            return SQLType.DATE;
+        }
+        if (value instanceof Time) {
+            return SQLType.TIME;
+        }
+        if (value instanceof Date) {
+            return SQLType.DATETIME;
+        }
+        return SQLType.VARCHAR;
+    }
+
     /**
      * 构建表查询语句
      *
@@ -160,9 +312,24 @@ public class RecorderUtil {
      */
     public static String buildCreateTableSqlMYSQL(IRecorder alog, String dbEngine, String charset)
             throws UnsupportedEncodingException {
+        return buildCreateTableSqlMYSQL(getLogTableName(alog, System.currentTimeMillis()), alog.getClass(), dbEngine,
+                charset);
+    }
+
+    /**
+     * 创建指定表名的建表Sql
+     *
+     * @param tableName 数据库表名
+     * @param clss      日志类
+     * @param dbEngine  数据库引擎
+     * @param charset   编码
+     * @return
+     * @throws UnsupportedEncodingException
+     */
+    public static String buildCreateTableSqlMYSQL(String tableName, Class<? extends IRecorder> clss, String dbEngine,
+                                                  String charset) throws UnsupportedEncodingException {
         StringBuilder createTableBuffer = new StringBuilder();
-        String tableName = getLogTableName(alog, System.currentTimeMillis());
-        List<Field> fieldAccessV2 = getLogFields(alog.getClass());
+        List<Field> fieldAccessV2 = getLogFields(clss);
         createTableBuffer.append("create table if not exists ").append(tableName).append(" (").append(line());
         createTableBuffer.append(PRIMARY_KEY + " int primary key not null auto_increment");
         for (Field field : fieldAccessV2) {
@@ -183,7 +350,7 @@ public class RecorderUtil {
         }
         createTableBuffer.append(")");
         createTableBuffer.append("engine=").append(dbEngine).append(" auto_increment=1 default charset=").append(charset).append(" comment '")
-                .append(alog.getClass().getSimpleName()).append("'");
+                .append(clss.getSimpleName()).append("'");
         String sql = createTableBuffer.toString();
         log.debug(sql);
         return sql;
@@ -226,13 +393,54 @@ public class RecorderUtil {
      */
     public static String buildInsertTableSqlMYSQL(IRecorder alog)
             throws IllegalArgumentException, IllegalAccessException {
+        return buildInsertTableSqlMYSQL(getLogTableName(alog, System.currentTimeMillis()),
+                Collections.singletonList(alog));
+    }
+
+    /**
+     * 创建多行插入Sql(同一张表的日志合并为一条语句)
+     *
+     * @param tableName 数据库表名
+     * @param alogs     同一日志类的日志列表
+     * @return
+     * @throws IllegalAccessException
+     * @throws IllegalArgumentException
+     */
+    public static String buildInsertTableSqlMYSQL(String tableName, List<? extends IRecorder> alogs)
+            throws IllegalArgumentException, IllegalAccessException {
+        StringBuilder sqlBuffer = new StringBuilder();
+        List<Field> fieldAccessV2 = getLogFields(alogs.get(0).getClass());
+        sqlBuffer.append("insert into `").append(tableName).append("`(");
+        for (Field field : fieldAccessV2) {
+            sqlBuffer.append("`").append(field.getName()).append("`").append(",");
+        }
+        sqlBuffer.deleteCharAt(sqlBuffer.length() - 1);
+        sqlBuffer.append(") values ");
+        RecorderBinder binder = RecorderBinder.of(alogs.get(0).getClass());
+        for (IRecorder alog : alogs) {
+            binder.appendValues(sqlBuffer, alog);
+            sqlBuffer.append(",");
+        }
+        sqlBuffer.deleteCharAt(sqlBuffer.length() - 1);
+        String sql = sqlBuffer.toString();
+        log.debug(sql);
+        return sql;
+    }
+
+    /**
+     * 创建带占位符的插入Sql模板
+     *
+     * @param tableName 数据库表名
+     * @param clss      日志类
+     * @return
+     */
+    public static String buildPreparedInsertTableSqlMYSQL(String tableName, Class<? extends IRecorder> clss) {
         StringBuilder fieldBuffer = new StringBuilder();
         StringBuilder valueBuffer = new StringBuilder();
-        String tableName = getLogTableName(alog, System.currentTimeMillis());
-        List<Field> fieldAccessV2 = getLogFields(alog.getClass());
+        List<Field> fieldAccessV2 = getLogFields(clss);
         for (Field field : fieldAccessV2) {
             fieldBuffer.append("`").append(field.getName()).append("`").append(",");
-            valueBuffer.append("'").append(field.get(alog)).append("'").append(",");
+            valueBuffer.append("?").append(",");
         }
         fieldBuffer.deleteCharAt(fieldBuffer.length() - 1);
         valueBuffer.deleteCharAt(valueBuffer.length() - 1);
@@ -242,6 +450,258 @@ public class RecorderUtil {
         return sql;
     }
 
+    /**
+     * 创建以制表符分隔字节流导入的LOAD DATA LOCAL INFILE语句
+     *
+     * @param tableName 数据库表名
+     * @param clss      日志类
+     * @return
+     */
+    public static String buildLoadDataSqlMYSQL(String tableName, Class<? extends IRecorder> clss) {
+        StringBuilder fieldBuffer = new StringBuilder();
+        List<Field> fieldAccessV2 = getLogFields(clss);
+        for (Field field : fieldAccessV2) {
+            fieldBuffer.append("`").append(field.getName()).append("`").append(",");
+        }
+        fieldBuffer.deleteCharAt(fieldBuffer.length() - 1);
+        String sql = "load data local infile '" + tableName + ".tsv' into table `" + tableName
+                + "` character set utf8mb4 fields terminated by '\\t' escaped by '\\\\' lines terminated by '\\n' ("
+                + fieldBuffer + ")";
+        log.debug(sql);
+        return sql;
+    }
+
+    /**
+     * 为语句设置LOAD DATA LOCAL INFILE的数据流(MySQL驱动的扩展方法，连接池包装的语句会先解包)
+     *
+     * @param statement 语句
+     * @param stream    数据流
+     * @return 驱动不支持时返回false
+     * @throws SQLException
+     */
+    public static boolean setLocalInfileInputStream(Statement statement, InputStream stream) throws SQLException {
+        Statement target = statement;
+        Method method = getLocalInfileMethod(target);
+        if (method == null && statement.isWrapperFor(Statement.class)) {
+            target = statement.unwrap(Statement.class);
+            method = getLocalInfileMethod(target);
+        }
+        if (method == null) {
+            return false;
+        }
+        try {
+            method.invoke(target, stream);
+            return true;
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    private static Method getLocalInfileMethod(Statement statement) {
+        return localInfileMethodCache.computeIfAbsent(statement.getClass(), clss -> {
+            Method method;
+            try {
+                method = clss.getMethod(LOCAL_INFILE_METHOD, InputStream.class);
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+            try {
+                // 驱动的实现类可能不是public
+                method.setAccessible(true);
+            } catch (RuntimeException e) {
+                log.debug("can not access " + method + ":" + e.getMessage());
+            }
+            return Optional.of(method);
+        }).orElse(null);
+    }
+
+    /**
+     * 是否为驱动或服务端不支持LOAD DATA LOCAL INFILE的异常
+     *
+     * @param e 数据库异常
+     * @return
+     */
+    public static boolean isLoadDataUnsupported(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (next instanceof SQLFeatureNotSupportedException || next.getErrorCode() == ER_NOT_ALLOWED_COMMAND
+                    || next.getErrorCode() == ER_CLIENT_LOCAL_FILES_DISABLED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按列类型绑定一条日志的插入参数
+     *
+     * @param statement 插入模板语句
+     * @param alog      日志
+     * @throws SQLException
+     */
+    public static void bindInsertParameters(PreparedStatement statement, IRecorder alog) throws SQLException {
+        RecorderBinder.of(alog.getClass()).bind(statement, alog);
+    }
+
+    /**
+     * 按列类型选择对应的setter绑定参数，时间列的{@link Date}按时间类型绑定，枚举按名称绑定，其他值按字符串绑定
+     *
+     * @param statement 语句
+     * @param index     参数位置(从1开始)
+     * @param type      列类型
+     * @param value     值
+     * @throws SQLException
+     */
+    public static void setParameter(PreparedStatement statement, int index, SQLType type, Object value)
+            throws SQLException {
+        if (value == null) {
+            statement.setNull(index, getJdbcType(type));
+            return;
+        }
+        switch (type) {
+            case BIGINT:
+                if (value instanceof Number) {
+                    statement.setLong(index, ((Number) value).longValue());
+                    return;
+                }
+                break;
+            case TINYINT:
+            case SMALLINT:
+            case MEDIUMINT:
+            case INT:
+            case INTEGER:
+                if (value instanceof Number) {
+                    statement.setInt(index, ((Number) value).intValue());
+                    return;
+                }
+                break;
+            case BIT:
+                if (value instanceof Boolean) {
+                    statement.setBoolean(index, (Boolean) value);
+                    return;
+                }
+                if (value instanceof Number) {
+                    statement.setInt(index, ((Number) value).intValue());
+                    return;
+                }
+                break;
+            case REAL:
+            case DOUBLE:
+            case FLOAT:
+                if (value instanceof Number) {
+                    statement.setDouble(index, ((Number) value).doubleValue());
+                    return;
+                }
+                break;
+            case DECIMAL:
+            case NUMERIC:
+                if (value instanceof BigDecimal) {
+                    statement.setBigDecimal(index, (BigDecimal) value);
+                    return;
+                }
+                break;
+            case TINYBLOB:
+            case BLOB:
+            case MEDIUMBLOB:
+            case LONGBLOB:
+            case BINARY:
+            case VARBINARY:
+                if (value instanceof byte[]) {
+                    statement.setBytes(index, (byte[]) value);
+                    return;
+                }
+                break;
+            case DATE:
+                if (value instanceof Date) {
+                    statement.setDate(index, new java.sql.Date(((Date) value).getTime()));
+                    return;
+                }
+                break;
+            case TIME:
+                if (value instanceof Date) {
+                    statement.setTime(index, new Time(((Date) value).getTime()));
+                    return;
+                }
+                break;
+            case TIMESTAMP:
+            case DATETIME:
+                if (value instanceof Timestamp) {
+                    statement.setTimestamp(index, (Timestamp) value);
+                    return;
+                }
+                if (value instanceof Date) {
+                    statement.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        if (value instanceof Enum) {
+            statement.setString(index, ((Enum<?>) value).name());
+            return;
+        }
+        statement.setString(index, value.toString());
+    }
+
+    /**
+     * 列类型对应的JDBC类型
+     *
+     * @param type 列类型
+     * @return {@link Types}
+     */
+    public static int getJdbcType(SQLType type) {
+        switch (type) {
+            case TINYINT:
+                return Types.TINYINT;
+            case SMALLINT:
+                return Types.SMALLINT;
+            case MEDIUMINT:
+            case INT:
+            case INTEGER:
+                return Types.INTEGER;
+            case BIGINT:
+                return Types.BIGINT;
+            case BIT:
+                return Types.BIT;
+            case REAL:
+                return Types.REAL;
+            case DOUBLE:
+                return Types.DOUBLE;
+            case FLOAT:
+                return Types.FLOAT;
+            case DECIMAL:
+                return Types.DECIMAL;
+            case NUMERIC:
+                return Types.NUMERIC;
+            case CHAR:
+                return Types.CHAR;
+            case DATE:
+                return Types.DATE;
+            case TIME:
+                return Types.TIME;
+            case TIMESTAMP:
+            case DATETIME:
+                return Types.TIMESTAMP;
+            case TINYBLOB:
+            case BLOB:
+            case MEDIUMBLOB:
+            case LONGBLOB:
+                return Types.BLOB;
+            case BINARY:
+                return Types.BINARY;
+            case VARBINARY:
+                return Types.VARBINARY;
+            case TEXT:
+            case MEDIUMTEXT:
+            case LONGTEXT:
+                return Types.LONGVARCHAR;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
     /**
      * 创建列增加Sql
      *
@@ -358,6 +818,25 @@ public class RecorderUtil {
         return tablenames;
     }
 
+    /**
+     * 设置计算滚动表名使用的时区(默认为系统时区)
+     *
+     * @param zoneId 时区
+     */
+    public static void setZoneId(ZoneId zoneId) {
+        RecorderUtil.zoneId = Objects.requireNonNull(zoneId, "zoneId");
+        tableNameResolverCache.clear();
+    }
+
+    /**
+     * 获取计算滚动表名使用的时区
+     *
+     * @return 时区
+     */
+    public static ZoneId getZoneId() {
+        return zoneId;
+    }
+
     /**
      * 获取此种日志当前带日期的名称
      *
@@ -365,22 +844,16 @@ public class RecorderUtil {
      * @return
      */
     public static String getLogTableName(IRecorder alog, long millTime) {
-        RollType logRollType = alog.rollType();
-        String tableName = alog.getClass().getSimpleName().toLowerCase();
-        switch (logRollType) {
-            case DAY_ROLL:
-                tableName = tableName + new SimpleDateFormat("yyyyMMdd").format(new Date(millTime));
-                break;
-            case MONTH_ROLL:
-                tableName = tableName + new SimpleDateFormat("yyyyMM").format(new Date(millTime));
-                break;
-            case YEAR_ROLL:
-                tableName = tableName + new SimpleDateFormat("yyyy").format(new Date(millTime));
-                break;
-            case NEVER_ROLL:
-                break;
+        return getTableNameResolver(alog.getClass(), alog.rollType()).resolve(millTime);
+    }
+
+    static TableNameResolver getTableNameResolver(Class<? extends IRecorder> clss, RollType rollType) {
+        TableNameResolver resolver = tableNameResolverCache.get(clss);
+        if (resolver == null || resolver.getRollType() != rollType || !resolver.getZoneId().equals(zoneId)) {
+            resolver = new TableNameResolver(clss, rollType, zoneId);
+            tableNameResolverCache.put(clss, resolver);
         }
-        return tableName;
+        return resolver;
     }
 
     /**
@@ -395,36 +868,28 @@ public class RecorderUtil {
      */
     public static Set<String> getRelativeTableNames(Class<? extends IRecorder> alog, long start, long end)
             throws InstantiationException, IllegalAccessException {
-        Calendar startCal = Calendar.getInstance(Locale.SIMPLIFIED_CHINESE);
-        startCal.setTimeInMillis(start);
-        startCal.set(Calendar.DAY_OF_MONTH, 1);
-        startCal.clear(Calendar.HOUR_OF_DAY);
-        startCal.clear(Calendar.MINUTE);
-        startCal.clear(Calendar.SECOND);
-        startCal.clear(Calendar.MILLISECOND);
+        return getRelativeTableNames(getTableNameResolver(alog, alog.newInstance().rollType()), start, end);
+    }
+
+    /**
+     * 通过开始时间和结束时间查找相关表
+     *
+     * @param resolver 日志类的表名解析器
+     * @param start    开始时间戳
+     * @param end      结束时间戳
+     * @return
+     */
+    static Set<String> getRelativeTableNames(TableNameResolver resolver, long start, long end) {
         Set<String> result = new HashSet<>();
-        IRecorder newInstance = alog.newInstance();
-        do {
-            String logTableName = getLogTableName(newInstance, startCal.getTimeInMillis());
-            RollType logRollType = newInstance.rollType();
-            if (logRollType == RollType.DAY_ROLL) {
-                if (startCal.getTimeInMillis() >= start) {
-                    result.add(logTableName);
-                }
-                startCal.add(Calendar.DAY_OF_YEAR, 1);
-            } else if (logRollType == RollType.MONTH_ROLL) {
-                result.add(logTableName);
-                startCal.add(Calendar.MONTH, 1);
-            } else if (logRollType == RollType.YEAR_ROLL) {
-                result.add(logTableName);
-                startCal.add(Calendar.YEAR, 1);
-            } else if (logRollType == RollType.NEVER_ROLL) {
-                result.add(logTableName);
-                break;
-            } else {
-                break;
-            }
-        } while (startCal.getTimeInMillis() <= end);
+        if (resolver.getRollType() == RollType.NEVER_ROLL) {
+            result.add(resolver.resolve(start));
+            return result;
+        }
+        LocalDate date = resolver.truncate(Instant.ofEpochMilli(start).atZone(resolver.getZoneId()).toLocalDate());
+        while (resolver.toMillis(date) <= end) {
+            result.add(resolver.tableName(date));
+            date = resolver.next(date);
+        }
         return result;
     }
 
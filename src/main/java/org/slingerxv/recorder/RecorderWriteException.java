@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 日志写入失败(异步写入的确认)
+ * 
+ * @author hank
+ *
+ */
+public class RecorderWriteException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+	private final String tableName;
+	private final boolean spilled;
+
+	public RecorderWriteException(String tableName, boolean spilled, Throwable cause) {
+		super((spilled ? "log spilled,table:" : "log failed,table:") + tableName, cause);
+		this.tableName = tableName;
+		this.spilled = spilled;
+	}
+
+	/**
+	 * 目标表名
+	 * 
+	 * @return
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * 日志是否已转入暂存(稍后由暂存回放写入数据库，调用方不应重试)
+	 * 
+	 * @return
+	 */
+	public boolean isSpilled() {
+		return spilled;
+	}
+}
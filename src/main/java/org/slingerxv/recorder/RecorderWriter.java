@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 日志批量写入线程
+ * <p>
+ * 从队列中拉取日志，按目标表分组后以多行INSERT的方式写入
+ *
+ * @author hank
+ */
+class RecorderWriter implements Runnable, AutoCloseable {
+    private static Logger log = LoggerFactory.getLogger(RecorderWriter.class);
+    // 队列空闲时单次等待的最长时间(毫秒)
+    private static final long IDLE_POLL_MILLIS = 100;
+    private final RecorderProxy proxy;
+    private final RecorderIntake intake;
+    private final RecorderEvent[] batch;
+    // 批次中每条日志的入队时间
+    private final long[] enqueueTimes;
+    private final RecorderMetrics metrics;
+    private int batchCount;
+    private final Map<String, List<IRecorder>> tableBatches = new LinkedHashMap<>();
+    // 每张表需要确认的日志(与日志一一对应，批次内没有需要确认的日志时为空)
+    private final Map<String, List<RecorderAck>> tableAcks = new HashMap<>();
+    private final WriterConnection connection;
+    // LOAD DATA使用的字节缓冲(首次使用时创建)
+    private LoadDataBuffer loadDataBuffer;
+
+    RecorderWriter(RecorderProxy proxy, RecorderIntake intake) {
+        this.proxy = proxy;
+        this.intake = intake;
+        this.batch = new RecorderEvent[proxy.getBatchSize()];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new RecorderEvent();
+        }
+        this.enqueueTimes = new long[batch.length];
+        this.metrics = proxy.getMetrics();
+        this.connection = new WriterConnection(proxy);
+    }
+
+    @Override
+    public void run() {
+        while (!proxy.isStop() || intake.size() > 0) {
+            try {
+                if (drain() > 0) {
+                    long oldestNanos = batch[0].enqueueNanos;
+                    long start = System.nanoTime();
+                    flush(batch, batchCount);
+                    long end = System.nanoTime();
+                    proxy.getBatchController().record(batchCount, end - oldestNanos, end - start, intake.size());
+                }
+            } catch (InterruptedException e) {
+                // 被中断时尽量把已取出的日志写完
+                flush(batch, batchCount);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                batchCount = 0;
+            }
+        }
+        close();
+    }
+
+    /**
+     * 释放写入线程持有的连接
+     */
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    /**
+     * 拉取一批日志，批次未满时最多等待linger时间
+     *
+     * @return 拉取数量
+     * @throws InterruptedException
+     */
+    private int drain() throws InterruptedException {
+        BatchController controller = proxy.getBatchController();
+        int batchSize = Math.min(batch.length, controller.getBatchSize());
+        long lingerNanos = controller.getLingerNanos();
+        long idleNanos = Math.max(lingerNanos, TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS));
+        batchCount = intake.drainTo(batch, 0, batchSize, idleNanos);
+        if (batchCount == 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batchCount < batchSize) {
+            long remain = deadline - System.nanoTime();
+            int count = intake.drainTo(batch, batchCount, batchSize - batchCount, remain);
+            if (count == 0) {
+                break;
+            }
+            batchCount += count;
+        }
+        return batchCount;
+    }
+
+    /**
+     * 在当前线程写完入口中剩余的日志(代理停止时使用)
+     *
+     * @return 写入的日志数量
+     * @throws InterruptedException
+     */
+    int flushRemaining() throws InterruptedException {
+        int total = 0;
+        int count;
+        while ((count = intake.drainTo(batch, 0, batch.length, 0)) > 0) {
+            flush(batch, count);
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * 按表分组写入一批日志
+     *
+     * @param events 日志事件
+     * @param size   事件数量
+     */
+    void flush(RecorderEvent[] events, int size) {
+        if (size == 0) {
+            return;
+        }
+        group(events, size);
+        try {
+            Connection con = connection.get();
+            for (Map.Entry<String, List<IRecorder>> entry : tableBatches.entrySet()) {
+                List<IRecorder> rows = entry.getValue();
+                boolean handedOff = false;
+                try {
+                    int count = insert(con, entry.getKey(), rows);
+                    acknowledge(entry.getKey(), count < rows.size() ? new SQLException(
+                            "rows written:" + count + ",expected:" + rows.size()) : null, false);
+                } catch (Exception e) {
+                    boolean outage = RecorderUtil.isConnectionFailure(e);
+                    handedOff = writeFailed(entry.getKey(), rows, e, outage, 0);
+                    if (outage) {
+                        // 连接已不可用，重新获取后继续写其他表
+                        connection.reset();
+                        con = connection.get();
+                    }
+                } finally {
+                    if (!handedOff) {
+                        proxy.recycle(rows);
+                    }
+                    rows.clear();
+                }
+            }
+        } catch (Exception e) {
+            // 无法获取连接
+            connection.reset();
+            for (Map.Entry<String, List<IRecorder>> entry : tableBatches.entrySet()) {
+                if (!entry.getValue().isEmpty() && !writeFailed(entry.getKey(), entry.getValue(), e, true, 0)) {
+                    proxy.recycle(entry.getValue());
+                }
+            }
+        } finally {
+            tableBatches.clear();
+            tableAcks.clear();
+            connection.release();
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            metrics.commit(now - enqueueTimes[i]);
+        }
+    }
+
+    /**
+     * 重试一批写入失败的日志(在重试线程上调用)
+     *
+     * @param tableName 表名
+     * @param rows      日志
+     * @param acks      需要确认的日志(可为空)
+     * @param attempt   第几次重试
+     */
+    void retry(String tableName, List<IRecorder> rows, List<RecorderAck> acks, int attempt) {
+        if (acks != null) {
+            tableAcks.put(tableName, acks);
+        }
+        boolean handedOff = false;
+        try {
+            Connection con = connection.get();
+            int count = insert(con, tableName, rows);
+            acknowledge(tableName, count < rows.size() ? new SQLException(
+                    "rows written:" + count + ",expected:" + rows.size()) : null, false);
+        } catch (Exception e) {
+            boolean outage = RecorderUtil.isConnectionFailure(e);
+            if (outage) {
+                connection.reset();
+            }
+            handedOff = writeFailed(tableName, rows, e, outage, attempt);
+        } finally {
+            if (!handedOff) {
+                proxy.recycle(rows);
+            }
+            tableAcks.clear();
+            connection.release();
+        }
+    }
+
+    /**
+     * 回放暂存的一批日志，数据库不可用时抛出异常以便下次从这一批重新回放
+     * <p>
+     * 同一批中已写入的表在重新回放时会再次写入(至少一次)
+     *
+     * @param events 日志事件
+     * @param size   事件数量
+     * @throws Exception 数据库不可用
+     */
+    void replay(RecorderEvent[] events, int size) throws Exception {
+        group(events, size);
+        try {
+            Connection con = connection.get();
+            for (Map.Entry<String, List<IRecorder>> entry : tableBatches.entrySet()) {
+                List<IRecorder> rows = entry.getValue();
+                try {
+                    insert(con, entry.getKey(), rows);
+                } catch (Exception e) {
+                    if (RecorderUtil.isConnectionFailure(e)) {
+                        connection.reset();
+                        throw e;
+                    }
+                    log.error(e.getMessage(), e);
+                    log.error("replay log failed,table:" + entry.getKey() + ",rows:" + rows.size());
+                    proxy.lost(entry.getKey(), rows.get(0).getClass(), rows.size());
+                }
+            }
+        } catch (SQLException e) {
+            // 无法获取连接
+            connection.reset();
+            throw e;
+        } finally {
+            for (List<IRecorder> rows : tableBatches.values()) {
+                proxy.recycle(rows);
+                rows.clear();
+            }
+            tableBatches.clear();
+            connection.release();
+        }
+    }
+
+    private void group(RecorderEvent[] events, int size) {
+        for (int i = 0; i < size; i++) {
+            RecorderEvent event = events[i];
+            List<IRecorder> rows = tableBatches.get(event.tableName);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                tableBatches.put(event.tableName, rows);
+            }
+            rows.add(event.record);
+            enqueueTimes[i] = event.enqueueNanos;
+            if (event.ack != null) {
+                List<RecorderAck> acks = tableAcks.get(event.tableName);
+                if (acks == null) {
+                    acks = new ArrayList<>();
+                    tableAcks.put(event.tableName, acks);
+                }
+                acks.add(event.ack);
+            }
+            event.clear();
+        }
+    }
+
+    /**
+     * 一张表的日志写完后统一完成其中需要确认的日志
+     *
+     * @param tableName 表名
+     * @param cause     失败原因(为空表示写入成功)
+     * @param spilled   是否已转入暂存
+     */
+    private void acknowledge(String tableName, Exception cause, boolean spilled) {
+        List<RecorderAck> acks = tableAcks.remove(tableName);
+        if (acks == null) {
+            return;
+        }
+        RecorderWriteException exception = cause == null ? null
+                : new RecorderWriteException(tableName, spilled, cause);
+        // executeAll提交的日志共用一个确认，连续的同一确认合并完成
+        RecorderAck last = null;
+        int count = 0;
+        for (RecorderAck ack : acks) {
+            if (ack != last) {
+                complete(last, count, exception);
+                last = ack;
+                count = 0;
+            }
+            count++;
+        }
+        complete(last, count, exception);
+    }
+
+    private static void complete(RecorderAck ack, int count, RecorderWriteException exception) {
+        if (ack == null) {
+            return;
+        }
+        if (exception == null) {
+            ack.success(count);
+        } else {
+            ack.fail(exception);
+        }
+    }
+
+    /**
+     * 写入失败：暂时性异常且未耗尽重试时交给重试调度，否则按{@link #failed}处理并完成确认
+     *
+     * @param tableName 表名
+     * @param rows      日志
+     * @param e         异常
+     * @param outage    是否为数据库不可用
+     * @param attempt   已重试的次数
+     * @return 日志实例是否仍被重试调度或自定义暂存持有(不能回收)
+     */
+    private boolean writeFailed(String tableName, List<IRecorder> rows, Exception e, boolean outage, int attempt) {
+        RecorderRetry retry = proxy.getRetry();
+        // 数据库不可用且有暂存时优先转入暂存，由回放负责重新写入
+        if (retry != null && !(outage && proxy.getSpillStore() != null) && RecorderUtil.isTransient(e)) {
+            List<RecorderAck> acks = tableAcks.get(tableName);
+            if (retry.schedule(tableName, new ArrayList<>(rows), acks, attempt + 1)) {
+                tableAcks.remove(tableName);
+                return true;
+            }
+            log.error("retry exhausted,table:" + tableName + ",rows:" + rows.size() + ",attempts:" + attempt);
+        }
+        boolean spilled = failed(tableName, rows, e, outage);
+        acknowledge(tableName, e, spilled);
+        return spilled && !(proxy.getSpillStore() instanceof RecorderJournal);
+    }
+
+    /**
+     * 写入失败：数据库不可用时转入暂存，有死信文件时写入死信，否则记为丢失
+     *
+     * @param tableName 表名
+     * @param rows      日志
+     * @param e         异常
+     * @param outage    是否为数据库不可用
+     * @return 是否已转入暂存
+     */
+    private boolean failed(String tableName, List<IRecorder> rows, Exception e, boolean outage) {
+        RecorderSpillStore spillStore = proxy.getSpillStore();
+        if (spillStore != null && outage) {
+            log.warn("database unavailable,spill logs,table:" + tableName + ",rows:" + rows.size() + ","
+                    + e.getMessage());
+            boolean spilled = true;
+            for (IRecorder row : rows) {
+                spilled &= proxy.spill(spillStore, tableName, row);
+            }
+            return spilled;
+        }
+        log.error(e.getMessage(), e);
+        RecorderSpillStore deadLetterStore = proxy.getDeadLetterStore();
+        if (deadLetterStore != null) {
+            log.error("log failed,dead letter,table:" + tableName + ",rows:" + rows.size());
+            for (IRecorder row : rows) {
+                proxy.deadLetter(deadLetterStore, tableName, row);
+            }
+            return false;
+        }
+        log.error("log failed,table:" + tableName + ",rows:" + rows.size());
+        proxy.lost(tableName, rows.get(0).getClass(), rows.size());
+        return false;
+    }
+
+    private int insert(Connection con, String tableName, List<IRecorder> rows) throws Exception {
+        Class<? extends IRecorder> clss = rows.get(0).getClass();
+        if (!proxy.isTableKnown(tableName)) {
+            proxy.createTable(con, tableName, clss);
+        }
+        int count;
+        try {
+            count = executeInsert(con, tableName, rows);
+        } catch (SQLException e) {
+            if (!RecorderUtil.isTableNotExist(e)) {
+                throw e;
+            }
+            // 表被外部删除，注册表失效后重建并重试一次
+            log.warn("table not exist,recreate:" + tableName);
+            proxy.forgetTable(tableName);
+            proxy.createTable(con, tableName, clss);
+            count = executeInsert(con, tableName, rows);
+        }
+        proxy.done(tableName, clss, count);
+        if (count < rows.size()) {
+            log.error("log failed,table:" + tableName + ",rows:" + (rows.size() - count));
+            proxy.lost(tableName, clss, rows.size() - count);
+        }
+        return count;
+    }
+
+    private int executeInsert(Connection con, String tableName, List<IRecorder> rows) throws Exception {
+        InsertMode insertMode = proxy.getInsertMode(rows.get(0).getClass());
+        if (insertMode == InsertMode.LOAD_DATA) {
+            int count = executeLoadData(con, tableName, rows);
+            if (count >= 0) {
+                return count;
+            }
+            insertMode = InsertMode.PREPARED;
+        }
+        if (insertMode == InsertMode.PREPARED) {
+            return executePreparedInsert(con, tableName, rows);
+        }
+        long start = System.nanoTime();
+        String buildInsertTableSql = RecorderUtil.buildInsertTableSqlMYSQL(tableName, rows);
+        metrics.sqlBuild(System.nanoTime() - start);
+        try (PreparedStatement insertStatement = con.prepareStatement(buildInsertTableSql)) {
+            // 执行插入
+            start = System.nanoTime();
+            int count = insertStatement.executeUpdate();
+            metrics.execute(System.nanoTime() - start);
+            return count;
+        }
+    }
+
+    private int executePreparedInsert(Connection con, String tableName, List<IRecorder> rows) throws Exception {
+        String buildInsertTableSql = proxy.getPreparedInsertSql(tableName, rows.get(0).getClass());
+        if (!connection.isAffine()) {
+            try (PreparedStatement insertStatement = con.prepareStatement(buildInsertTableSql)) {
+                return executeBatch(insertStatement, rows);
+            }
+        }
+        // 独占连接上复用预编译语句
+        PreparedStatement insertStatement = connection.prepare(buildInsertTableSql);
+        try {
+            return executeBatch(insertStatement, rows);
+        } catch (Exception e) {
+            try {
+                insertStatement.clearBatch();
+            } catch (SQLException ignore) {
+                // 语句已不可用，随连接一起重置
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 以LOAD DATA LOCAL INFILE写入
+     *
+     * @return 写入数量，驱动或服务端不支持时返回-1
+     */
+    private int executeLoadData(Connection con, String tableName, List<IRecorder> rows) throws Exception {
+        if (loadDataBuffer == null) {
+            loadDataBuffer = new LoadDataBuffer(rows.size() * 64);
+        }
+        long start = System.nanoTime();
+        RecorderBinder binder = RecorderBinder.of(rows.get(0).getClass());
+        loadDataBuffer.reset();
+        for (IRecorder row : rows) {
+            binder.writeRow(loadDataBuffer, row);
+        }
+        metrics.sqlBuild(System.nanoTime() - start);
+        try (Statement statement = con.createStatement()) {
+            if (!RecorderUtil.setLocalInfileInputStream(statement, loadDataBuffer.toInputStream())) {
+                proxy.loadDataUnsupported("driver has no setLocalInfileInputStream");
+                return -1;
+            }
+            start = System.nanoTime();
+            int count = statement.executeUpdate(proxy.getLoadDataSql(tableName, binder.getRecorderClass()));
+            metrics.execute(System.nanoTime() - start);
+            return count;
+        } catch (SQLException e) {
+            if (!RecorderUtil.isLoadDataUnsupported(e)) {
+                throw e;
+            }
+            proxy.loadDataUnsupported(e.getMessage());
+            return -1;
+        }
+    }
+
+    private int executeBatch(PreparedStatement insertStatement, List<IRecorder> rows) throws Exception {
+        long start = System.nanoTime();
+        for (IRecorder row : rows) {
+            RecorderUtil.bindInsertParameters(insertStatement, row);
+            insertStatement.addBatch();
+        }
+        metrics.sqlBuild(System.nanoTime() - start);
+        // 执行批量插入
+        start = System.nanoTime();
+        int count = countBatch(insertStatement.executeBatch());
+        metrics.execute(System.nanoTime() - start);
+        return count;
+    }
+
+    private static int countBatch(int[] results) {
+        int count = 0;
+        for (int result : results) {
+            if (result > 0 || result == Statement.SUCCESS_NO_INFO) {
+                count += Math.max(result, 1);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 预分配槽位的多生产者多消费者环形队列日志入口
+ * <p>
+ * 每个槽位带一个序号：生产者和消费者分别通过CAS推进自己的序号来占用槽位，槽位序号表示该槽位可写还是可读，
+ * 入队时只写入槽位中的引用，不产生任何分配
+ *
+ * @author hank
+ */
+final class RingBufferIntake implements RecorderIntake {
+    // SLEEPING策略单次休眠时间(纳秒)
+    private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int MAX_CAPACITY = 1 << 30;
+    private final int mask;
+    private final RecorderEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    RingBufferIntake(int capacity, WaitStrategy waitStrategy) {
+        // 至少两个槽位，否则槽位的可读序号与下一圈的可写序号相同
+        int size = 2;
+        while (size < capacity && size < MAX_CAPACITY) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.slots = new RecorderEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new RecorderEvent();
+            sequences.set(i, i);
+        }
+        this.waitStrategy = waitStrategy;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack) {
+        long pos = producerSequence.get();
+        int index;
+        for (; ; ) {
+            index = (int) pos & mask;
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (producerSequence.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = producerSequence.get();
+            } else if (dif < 0) {
+                // 队列已满
+                return false;
+            } else {
+                pos = producerSequence.get();
+            }
+        }
+        RecorderEvent slot = slots[index];
+        slot.record = record;
+        slot.tableName = tableName;
+        slot.ack = ack;
+        slot.enqueueNanos = System.nanoTime();
+        // 发布槽位
+        sequences.set(index, pos + 1);
+        if (waitStrategy == WaitStrategy.BLOCKING && waiters.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(IRecorder record, String tableName, RecorderAck ack, long timeoutNanos)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!offer(record, tableName, ack)) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(SLEEP_NANOS);
+        }
+        return true;
+    }
+
+    @Override
+    public RecorderEvent dropOldest(String tableName) {
+        RecorderEvent dropped = new RecorderEvent();
+        if (!poll(dropped)) {
+            return null;
+        }
+        dropped.drop();
+        return dropped;
+    }
+
+    @Override
+    public int drainTo(RecorderEvent[] events, int offset, int max, long timeoutNanos) throws InterruptedException {
+        int count = 0;
+        while (count < max && poll(events[offset + count])) {
+            count++;
+        }
+        if (count > 0 || timeoutNanos <= 0 || !await(timeoutNanos)) {
+            return count;
+        }
+        while (count < max && poll(events[offset + count])) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, producerSequence.get() - consumerSequence.get());
+    }
+
+    /**
+     * 取出一条日志复制到target，并释放槽位
+     *
+     * @param target 写入线程的事件
+     * @return 是否取到
+     */
+    private boolean poll(RecorderEvent target) {
+        long pos = consumerSequence.get();
+        for (; ; ) {
+            int index = (int) pos & mask;
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) {
+                if (consumerSequence.compareAndSet(pos, pos + 1)) {
+                    RecorderEvent slot = slots[index];
+                    target.copy(slot);
+                    slot.clear();
+                    // 槽位可供下一圈的生产者使用
+                    sequences.lazySet(index, pos + mask + 1);
+                    return true;
+                }
+                pos = consumerSequence.get();
+            } else if (dif < 0) {
+                // 队列为空
+                return false;
+            } else {
+                pos = consumerSequence.get();
+            }
+        }
+    }
+
+    private boolean isReadable() {
+        long pos = consumerSequence.get();
+        return sequences.get((int) pos & mask) == pos + 1;
+    }
+
+    /**
+     * 按等待策略等待队列中出现可读的日志
+     *
+     * @param timeoutNanos 最长等待时间(纳秒)
+     * @return 是否可读
+     * @throws InterruptedException
+     */
+    private boolean await(long timeoutNanos) throws InterruptedException {
+        if (waitStrategy == WaitStrategy.BLOCKING) {
+            waiters.incrementAndGet();
+            try {
+                lock.lockInterruptibly();
+                try {
+                    long nanos = timeoutNanos;
+                    while (!isReadable()) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = notEmpty.awaitNanos(nanos);
+                    }
+                    return true;
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (!isReadable()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (waitStrategy == WaitStrategy.SLEEPING) {
+                LockSupport.parkNanos(SLEEP_NANOS);
+            } else if (waitStrategy == WaitStrategy.YIELDING) {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * 日志表名解析器(每个日志类一个)
+ * <p>
+ * 缓存小写的表名前缀和当前周期的[start,end)时间窗口，时间落在窗口内时直接返回缓存的表名
+ *
+ * @author hank
+ */
+final class TableNameResolver {
+    private final String prefix;
+    private final RollType rollType;
+    private final ZoneId zoneId;
+    private volatile Period current;
+
+    TableNameResolver(Class<? extends IRecorder> clss, RollType rollType, ZoneId zoneId) {
+        this.prefix = clss.getSimpleName().toLowerCase();
+        this.rollType = rollType;
+        this.zoneId = zoneId;
+        this.current = new Period(Long.MIN_VALUE, Long.MIN_VALUE, prefix);
+    }
+
+    RollType getRollType() {
+        return rollType;
+    }
+
+    ZoneId getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * 获取某个时间点对应的表名
+     *
+     * @param millTime 时间戳
+     * @return 表名
+     */
+    String resolve(long millTime) {
+        if (rollType == RollType.NEVER_ROLL) {
+            return prefix;
+        }
+        Period period = current;
+        if (millTime >= period.start && millTime < period.end) {
+            return period.tableName;
+        }
+        Period next = period(millTime);
+        // 只有时间向前推进时才替换缓存，查询历史表不影响写入路径
+        if (millTime >= period.end) {
+            current = next;
+        }
+        return next.tableName;
+    }
+
+    /**
+     * 计算某个时间点所在的周期
+     *
+     * @param millTime 时间戳
+     * @return 周期
+     */
+    Period period(long millTime) {
+        if (rollType == RollType.NEVER_ROLL) {
+            return new Period(Long.MIN_VALUE, Long.MAX_VALUE, prefix);
+        }
+        LocalDate date = Instant.ofEpochMilli(millTime).atZone(zoneId).toLocalDate();
+        LocalDate start = truncate(date);
+        return new Period(toMillis(start), toMillis(next(start)), tableName(start));
+    }
+
+    /**
+     * 计算表名对应周期的结束时间
+     *
+     * @param tableName 表名
+     * @return 周期结束时间戳，不滚动或不是本类的滚动表时返回Long.MAX_VALUE
+     */
+    long periodEnd(String tableName) {
+        int digits = rollType == RollType.DAY_ROLL ? 8 : rollType == RollType.MONTH_ROLL ? 6 : 4;
+        if (rollType == RollType.NEVER_ROLL || tableName.length() != prefix.length() + digits
+                || !tableName.startsWith(prefix)) {
+            return Long.MAX_VALUE;
+        }
+        String suffix = tableName.substring(prefix.length());
+        for (int i = 0; i < suffix.length(); i++) {
+            if (!Character.isDigit(suffix.charAt(i))) {
+                return Long.MAX_VALUE;
+            }
+        }
+        try {
+            int year = Integer.parseInt(suffix.substring(0, 4));
+            int month = digits >= 6 ? Integer.parseInt(suffix.substring(4, 6)) : 1;
+            int day = digits == 8 ? Integer.parseInt(suffix.substring(6, 8)) : 1;
+            return toMillis(next(LocalDate.of(year, month, day)));
+        } catch (DateTimeException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 将日期截断到所在周期的第一天
+     *
+     * @param date 日期
+     * @return 周期第一天
+     */
+    LocalDate truncate(LocalDate date) {
+        switch (rollType) {
+            case DAY_ROLL:
+                return date;
+            case MONTH_ROLL:
+                return date.withDayOfMonth(1);
+            case YEAR_ROLL:
+                return date.withDayOfYear(1);
+            default:
+                return LocalDate.MIN;
+        }
+    }
+
+    /**
+     * 下一周期的第一天
+     *
+     * @param start 周期第一天
+     * @return 下一周期第一天
+     */
+    LocalDate next(LocalDate start) {
+        switch (rollType) {
+            case DAY_ROLL:
+                return start.plusDays(1);
+            case MONTH_ROLL:
+                return start.plusMonths(1);
+            case YEAR_ROLL:
+                return start.plusYears(1);
+            default:
+                return LocalDate.MAX;
+        }
+    }
+
+    long toMillis(LocalDate date) {
+        return ZonedDateTime.of(date.atStartOfDay(), zoneId).toInstant().toEpochMilli();
+    }
+
+    String tableName(LocalDate start) {
+        StringBuilder sb = new StringBuilder(prefix.length() + 8).append(prefix).append(start.getYear());
+        if (rollType == RollType.MONTH_ROLL || rollType == RollType.DAY_ROLL) {
+            appendTwoDigits(sb, start.getMonthValue());
+        }
+        if (rollType == RollType.DAY_ROLL) {
+            appendTwoDigits(sb, start.getDayOfMonth());
+        }
+        return sb.toString();
+    }
+
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+        if (value < 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    /**
+     * 一个滚动周期[start,end)
+     */
+    static final class Period {
+        final long start;
+        final long end;
+        final String tableName;
+
+        Period(long start, long end, String tableName) {
+            this.start = start;
+            this.end = end;
+            this.tableName = tableName;
+        }
+    }
+}
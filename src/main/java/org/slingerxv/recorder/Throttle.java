@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 日志类的采样和限流(在execute入队之前执行，被采样掉或限流的日志不进入队列)
+ * <p>
+ * 可被RecorderProxyBuilder中按类的设置覆盖
+ * 
+ * @author hank
+ *
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Throttle {
+
+	/**
+	 * 每秒允许写入的数量(令牌桶)，0为不限流
+	 * 
+	 * @return
+	 */
+	double permitsPerSecond() default 0;
+
+	/**
+	 * 令牌桶容量(允许的突发数量)，0时为每秒数量
+	 * 
+	 * @return
+	 */
+	int burst() default 0;
+
+	/**
+	 * 采样率(0~1)，1为不采样
+	 * 
+	 * @return
+	 */
+	double sampleRate() default 1;
+
+	/**
+	 * 按该列(带{@link Col}注解的字段)值的哈希确定性采样(同一个值要么全部保留要么全部丢弃)，为空时随机采样
+	 * 
+	 * @return
+	 */
+	String sampleKey() default "";
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+/**
+ * 环形队列为空时写入线程的等待策略
+ * 
+ * @author hank
+ *
+ */
+public enum WaitStrategy {
+	/**
+	 * 锁和条件变量阻塞等待，CPU占用最低
+	 */
+	BLOCKING,
+	/**
+	 * 短暂休眠后重试，延迟和CPU占用折中
+	 */
+	SLEEPING,
+	/**
+	 * 让出CPU后重试
+	 */
+	YIELDING,
+	/**
+	 * 自旋等待，延迟最低但独占一个CPU核心
+	 */
+	BUSY_SPIN;
+}
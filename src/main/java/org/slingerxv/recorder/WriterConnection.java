@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016-present The Recorder Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.slingerxv.recorder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写入线程独占的数据库连接
+ * <p>
+ * 连接在线程生命周期内一直持有，空闲超过检查间隔后使用前先做健康检查，失败时重新获取，
+ * 同时按SQL缓存该连接上的预编译语句
+ *
+ * @author hank
+ */
+final class WriterConnection implements AutoCloseable {
+    private static Logger log = LoggerFactory.getLogger(WriterConnection.class);
+    // 健康检查超时(秒)
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+    private final RecorderProxy proxy;
+    private final boolean affine;
+    private final long validateIntervalMillis;
+    private final Map<String, PreparedStatement> statements;
+    private Connection connection;
+    private long lastUsed;
+
+    WriterConnection(RecorderProxy proxy) {
+        this.proxy = proxy;
+        this.affine = proxy.isThreadAffineConnection();
+        this.validateIntervalMillis = proxy.getConnectionValidateIntervalMillis();
+        final int cacheSize = proxy.getStatementCacheSize();
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > cacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取连接，必要时先做健康检查或重新获取
+     *
+     * @return 连接
+     * @throws SQLException
+     */
+    Connection get() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (connection != null && now - lastUsed > validateIntervalMillis) {
+            boolean valid;
+            try {
+                valid = !connection.isClosed() && connection.isValid(VALIDATE_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                valid = false;
+            }
+            if (!valid) {
+                log.warn("writer connection invalid,reconnect");
+                reset();
+            }
+        }
+        if (connection == null) {
+            connection = proxy.getConnection();
+        }
+        lastUsed = now;
+        return connection;
+    }
+
+    /**
+     * 获取缓存的预编译语句
+     *
+     * @param sql 语句
+     * @return 预编译语句
+     * @throws SQLException
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        if (!affine) {
+            throw new IllegalStateException("statement cache requires thread affine connection");
+        }
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = get().prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    boolean isAffine() {
+        return affine;
+    }
+
+    /**
+     * 一批日志写完：非独占模式下归还连接
+     */
+    void release() {
+        if (!affine) {
+            reset();
+        }
+    }
+
+    /**
+     * 关闭连接和缓存的语句(连接异常后调用，下次使用时重新获取)
+     */
+    void reset() {
+        for (Iterator<PreparedStatement> iterator = statements.values().iterator(); iterator.hasNext(); ) {
+            closeQuietly(iterator.next());
+            iterator.remove();
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn(e.getMessage(), e);
+            }
+            connection = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn(e.getMessage(), e);
+        }
+    }
+}
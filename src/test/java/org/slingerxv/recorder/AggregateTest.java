@@ -0,0 +1,101 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AggregateTest {
+
+	@Aggregate(keys = "name", sums = "age", windowMillis = 3600000)
+	public static class GoldLog extends UserLog {
+	}
+
+	@Aggregate(keys = "name", sums = "age", windowMillis = 100)
+	public static class FastGoldLog extends UserLog {
+	}
+
+	@Test
+	public void fold() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 99; i++) {
+			GoldLog log = new GoldLog();
+			log.name = "name" + (i % 3);
+			log.age = i;
+			futures.add(recorderProxy.executeAsync(log));
+		}
+		assertEquals(96, recorderProxy.getAggregatedLogNum());
+		// 窗口结束前不写入
+		assertTrue(!futures.get(0).isDone());
+		recorderProxy.stopServer();
+		for (CompletableFuture<Void> future : futures) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(3, recorderProxy.getDoneLogNum());
+		String inserts = String.join("\n", jdbc.sqls());
+		// 0+3+...+96=1584, 1+4+...+97=1617, 2+5+...+98=1650
+		assertTrue(inserts, inserts.contains("('name0','1584',"));
+		assertTrue(inserts, inserts.contains("('name1','1617',"));
+		assertTrue(inserts, inserts.contains("('name2','1650',"));
+	}
+
+	@Test
+	public void flushRejected() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.insertGate = new CountDownLatch(1);
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).threadCorePoolSize(1).batchSize(1).taskMaxSize(1)
+				.overloadPolicy(OverloadPolicy.REJECT).build();
+		recorderProxy.startServer();
+		// 写入线程阻塞在第一条日志上，第二条占满入口
+		recorderProxy.execute(newLog(0));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (recorderProxy.getTaksCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		recorderProxy.execute(newLog(1));
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			FastGoldLog log = new FastGoldLog();
+			log.name = "name";
+			log.age = i;
+			futures.add(recorderProxy.executeAsync(log));
+		}
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RecorderTaskOverloadException);
+			}
+		}
+		// 合并后的一行被拒绝时，被合并的日志全部计为丢失
+		assertEquals(5, recorderProxy.getLostLogNum());
+		jdbc.insertGate.countDown();
+		recorderProxy.stopServer();
+		assertEquals(2, recorderProxy.getDoneLogNum());
+		assertEquals(5, recorderProxy.getLostLogNum());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidSum() {
+		RecorderAggregator.of(InvalidLog.class);
+	}
+
+	@Aggregate(sums = "name")
+	public static class InvalidLog extends UserLog {
+	}
+}
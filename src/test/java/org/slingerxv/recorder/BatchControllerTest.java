@@ -0,0 +1,59 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class BatchControllerTest {
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void fixed() {
+		BatchController controller = new BatchController(200, 50, 0, clock::get);
+		cycle(controller, 500, 10000);
+		// 不调整时也不统计
+		assertEquals(200, controller.getBatchSize());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(50), controller.getLingerNanos());
+		assertEquals(0, controller.getLatencyP99Nanos());
+	}
+
+	@Test
+	public void adapt() {
+		BatchController controller = new BatchController(200, 50, 20, clock::get);
+		// 未到调整周期时只记录样本
+		controller.record(10, TimeUnit.MILLISECONDS.toNanos(40), TimeUnit.MICROSECONDS.toNanos(100), 0);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(50), controller.getLingerNanos());
+		// 延迟超过目标：先缩短等待，再缩小批次
+		cycle(controller, 40, 0);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(25), controller.getLingerNanos());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(40), controller.getLatencyP99Nanos());
+		assertEquals(200, controller.getBatchSize());
+		for (int i = 0; i < 6; i++) {
+			cycle(controller, 40, 0);
+		}
+		assertEquals(0, controller.getLingerNanos());
+		assertTrue(controller.getBatchSize() < 200);
+		// 有积压：不再等待，放大批次
+		int size = controller.getBatchSize();
+		cycle(controller, 40, 10000);
+		assertEquals(Math.min(200, size * 2), controller.getBatchSize());
+		// 远低于目标：加长等待
+		cycle(controller, 1, 0);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1), controller.getLingerNanos());
+		cycle(controller, 1, 0);
+		cycle(controller, 1, 0);
+		cycle(controller, 1, 0);
+		// 等待时间不超过目标的1/4
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(5), controller.getLingerNanos());
+	}
+
+	private void cycle(BatchController controller, long latencyMillis, int queueDepth) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		controller.record(10, TimeUnit.MILLISECONDS.toNanos(latencyMillis), TimeUnit.MICROSECONDS.toNanos(100),
+				queueDepth);
+	}
+}
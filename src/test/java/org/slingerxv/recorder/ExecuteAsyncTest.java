@@ -0,0 +1,83 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ExecuteAsyncTest {
+
+	@Test
+	public void acknowledge() throws Exception {
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder()
+				.dataSource(new FakeJdbc()::dataSource).tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		CompletableFuture<Void> one = recorderProxy.executeAsync(newLog(0));
+		List<UserLog> logs = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			logs.add(newLog(i));
+		}
+		CompletableFuture<Void> all = recorderProxy.executeAll(logs);
+		one.get(5, TimeUnit.SECONDS);
+		all.get(5, TimeUnit.SECONDS);
+		assertEquals(11, recorderProxy.getDoneLogNum());
+		assertTrue(recorderProxy.executeAll(new ArrayList<>()).isDone());
+		recorderProxy.stopServer();
+		try {
+			recorderProxy.executeAsync(newLog(0)).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RecorderProxyStateException);
+		}
+	}
+
+	@Test
+	public void writeFailed() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		jdbc.insertError = new SQLException("Data too long", "22001", 1406);
+		CompletableFuture<Void> future = recorderProxy.executeAsync(newLog(0));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RecorderWriteException);
+			assertFalse(((RecorderWriteException) e.getCause()).isSpilled());
+		}
+		recorderProxy.stopServer();
+		assertEquals(1, recorderProxy.getLostLogNum());
+	}
+
+	@Test
+	public void dropOldest() throws Exception {
+		RecorderIntake[] intakes = { new QueueIntake(1), new RingBufferIntake(1, WaitStrategy.SLEEPING) };
+		for (RecorderIntake intake : intakes) {
+			RecorderAck oldest = new RecorderAck(1);
+			assertTrue(intake.offer(newLog(0), "userlog", oldest));
+			while (intake.offer(newLog(1), "userlog", null)) {
+				// 填满入口
+			}
+			RecorderEvent dropped = intake.dropOldest("userlog");
+			assertEquals("name0", ((UserLog) dropped.record).name);
+			assertEquals("userlog", dropped.tableName);
+			try {
+				oldest.getFuture().get(5, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof RecorderTaskOverloadException);
+			}
+		}
+	}
+}
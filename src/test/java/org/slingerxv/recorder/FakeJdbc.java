@@ -0,0 +1,380 @@
+package org.slingerxv.recorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+/**
+ * 测试用的内存JDBC桩：记录执行的语句，按配置返回查询结果或抛出异常
+ */
+final class FakeJdbc {
+	// UserLog的列
+	static final List<String> USER_LOG_COLUMNS = Arrays.asList("pk_id", "name", "age", "address", "createTime");
+	private static final Result EMPTY = new Result() {
+		@Override
+		public int size() {
+			return 0;
+		}
+
+		@Override
+		public Object get(int row, String column) {
+			return null;
+		}
+	};
+
+	/**
+	 * MySQL驱动Statement的LOAD DATA扩展方法
+	 */
+	public interface LocalInfileStatement extends Statement {
+		void setLocalInfileInputStream(InputStream stream);
+	}
+
+	/**
+	 * 查询结果，按行号和列名取值(取值时才生成)
+	 */
+	interface Result {
+		int size();
+
+		Object get(int row, String column);
+	}
+
+	/**
+	 * 执行过的一条语句
+	 */
+	static final class Executed {
+		final String sql;
+		// 绑定的参数值(批量执行时按行依次排列，setNull为null)
+		final List<Object> parameters;
+		// 绑定参数使用的setter(与parameters一一对应)
+		final List<String> setters;
+		final String thread;
+
+		private Executed(String sql, List<Object> parameters, List<String> setters) {
+			this.sql = sql;
+			this.parameters = new ArrayList<>(parameters);
+			this.setters = new ArrayList<>(setters);
+			this.thread = Thread.currentThread().getName();
+		}
+	}
+
+	final List<Executed> executed = Collections.synchronizedList(new ArrayList<>());
+	// LOAD DATA读取到的数据
+	final List<String> streams = Collections.synchronizedList(new ArrayList<>());
+	// 插入语句依次抛出的异常
+	final Queue<SQLException> errors = new ConcurrentLinkedQueue<>();
+	// 数据库中已有的表
+	final List<String> tables = Collections.synchronizedList(new ArrayList<>());
+	// 已读出的查询行数
+	final AtomicInteger fetchedRows = new AtomicInteger();
+	final AtomicInteger openedConnections = new AtomicInteger();
+	final AtomicInteger closedConnections = new AtomicInteger();
+	// 创建和关闭的预编译语句数量
+	final AtomicInteger preparedStatements = new AtomicInteger();
+	final AtomicInteger closedStatements = new AtomicInteger();
+	// 查询表名(DatabaseMetaData.getTables)的次数
+	final AtomicInteger tableLookups = new AtomicInteger();
+	// 不为空时插入总是抛出该异常
+	volatile SQLException insertError;
+	// 不为空时insertError只作用于该表
+	volatile String insertErrorTable;
+	// 为真时无法获取连接
+	volatile boolean down;
+	// 连接健康检查(isValid)的结果
+	volatile boolean connectionValid = true;
+	// 不为空时插入等待放行
+	volatile CountDownLatch insertGate;
+	// 是否支持LOAD DATA LOCAL INFILE
+	volatile boolean localInfile;
+	// 结果集是否提供元数据
+	volatile boolean resultMetaData = true;
+	volatile List<String> columns = USER_LOG_COLUMNS;
+	volatile Function<String, Result> results = sql -> EMPTY;
+	// 最后一次设置的fetchSize
+	volatile Integer fetchSize;
+
+	static UserLog newLog(int i) {
+		UserLog log = new UserLog();
+		log.name = "name" + i;
+		log.age = i;
+		log.createTime = 1501138771000L + i;
+		return log;
+	}
+
+	DataSource dataSource() {
+		return proxy(DataSource.class, (dataSource, method, args) -> {
+			if (!"getConnection".equals(method.getName())) {
+				return null;
+			}
+			if (down) {
+				throw new SQLTransientConnectionException("down", "08001");
+			}
+			openedConnections.incrementAndGet();
+			return connection();
+		});
+	}
+
+	/**
+	 * 执行过的语句
+	 */
+	List<String> sqls() {
+		List<String> sqls = new ArrayList<>();
+		synchronized (executed) {
+			for (Executed each : executed) {
+				sqls.add(each.sql);
+			}
+		}
+		return sqls;
+	}
+
+	/**
+	 * 某张表的建表语句执行次数
+	 */
+	int creates(String tableName) {
+		int count = 0;
+		for (String sql : sqls()) {
+			if (sql.startsWith("create table if not exists " + tableName + " ")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private Connection connection() {
+		return proxy(Connection.class, (connection, method, args) -> {
+			switch (method.getName()) {
+			case "prepareStatement":
+				preparedStatements.incrementAndGet();
+				return statement((String) args[0]);
+			case "createStatement":
+				return loadDataStatement();
+			case "getMetaData":
+				return proxy(DatabaseMetaData.class, (metaData, m, a) -> {
+					tableLookups.incrementAndGet();
+					return tableResultSet();
+				});
+			case "isValid":
+				return connectionValid;
+			case "isClosed":
+				return false;
+			case "close":
+				closedConnections.incrementAndGet();
+				return null;
+			default:
+				return null;
+			}
+		});
+	}
+
+	private PreparedStatement statement(String sql) {
+		List<Object> parameters = new ArrayList<>();
+		List<String> setters = new ArrayList<>();
+		int[] batch = { 0 };
+		return proxy(PreparedStatement.class, (statement, m, a) -> {
+			if (m.getName().startsWith("set") && a != null && a.length >= 2 && a[0] instanceof Integer) {
+				// setObject、setLong、setNull等参数绑定
+				parameters.add("setNull".equals(m.getName()) ? null : a[1]);
+				setters.add(m.getName());
+				return null;
+			}
+			switch (m.getName()) {
+			case "setFetchSize":
+				fetchSize = (Integer) a[0];
+				return null;
+			case "executeQuery":
+				executed.add(new Executed(sql, parameters, setters));
+				return resultSet(results.apply(sql));
+			case "addBatch":
+				batch[0]++;
+				return null;
+			case "executeBatch":
+				int[] counts = new int[batch[0]];
+				Arrays.fill(counts, 1);
+				try {
+					insert(sql, parameters, setters);
+				} finally {
+					parameters.clear();
+					setters.clear();
+					batch[0] = 0;
+				}
+				return counts;
+			case "clearBatch":
+				parameters.clear();
+				setters.clear();
+				batch[0] = 0;
+				return null;
+			case "close":
+				closedStatements.incrementAndGet();
+				return null;
+			case "executeUpdate":
+				if (!sql.startsWith("insert")) {
+					executed.add(new Executed(sql, parameters, setters));
+					return 0;
+				}
+				insert(sql, parameters, setters);
+				return sql.split("\\),\\(").length;
+			default:
+				return null;
+			}
+		});
+	}
+
+	private void insert(String sql, List<Object> parameters, List<String> setters)
+			throws SQLException, InterruptedException {
+		CountDownLatch gate = insertGate;
+		if (gate != null) {
+			gate.await();
+		}
+		SQLException error = errors.poll();
+		String errorTable = insertErrorTable;
+		if (error == null && (errorTable == null || sql.contains("`" + errorTable + "`"))) {
+			error = insertError;
+		}
+		if (error != null) {
+			throw error;
+		}
+		executed.add(new Executed(sql, parameters, setters));
+	}
+
+	private Statement loadDataStatement() {
+		InputStream[] stream = { null };
+		Class<?> statementClass = localInfile ? LocalInfileStatement.class : Statement.class;
+		return (Statement) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[] { statementClass },
+				(statement, m, a) -> {
+					switch (m.getName()) {
+					case "setLocalInfileInputStream":
+						stream[0] = (InputStream) a[0];
+						return null;
+					case "isWrapperFor":
+						return false;
+					case "executeUpdate":
+						String data = read(stream[0]);
+						insert((String) a[0], Collections.emptyList(), Collections.emptyList());
+						streams.add(data);
+						return data.split("\n").length;
+					default:
+						return null;
+					}
+				});
+	}
+
+	private ResultSet tableResultSet() {
+		List<String> names = new ArrayList<>(tables);
+		int[] row = { -1 };
+		return proxy(ResultSet.class, (resultSet, m, a) -> {
+			switch (m.getName()) {
+			case "next":
+				return ++row[0] < names.size();
+			case "getString":
+				return names.get(row[0]);
+			default:
+				return null;
+			}
+		});
+	}
+
+	private ResultSet resultSet(Result result) {
+		List<String> labels = columns;
+		ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, m, a) -> {
+			switch (m.getName()) {
+			case "getColumnCount":
+				return labels.size();
+			case "getColumnLabel":
+			case "getColumnName":
+				return labels.get((int) a[0] - 1);
+			default:
+				return null;
+			}
+		});
+		int[] row = { -1 };
+		Object[] last = { null };
+		return proxy(ResultSet.class, (resultSet, m, a) -> {
+			switch (m.getName()) {
+			case "next":
+				if (row[0] + 1 >= result.size()) {
+					return false;
+				}
+				row[0]++;
+				fetchedRows.incrementAndGet();
+				return true;
+			case "getMetaData":
+				return resultMetaData ? metaData : null;
+			case "findColumn":
+				for (int i = 0; i < labels.size(); i++) {
+					if (labels.get(i).equalsIgnoreCase((String) a[0])) {
+						return i + 1;
+					}
+				}
+				throw new SQLException("Column '" + a[0] + "' not found.");
+			case "wasNull":
+				return last[0] == null;
+			case "getString":
+			case "getInt":
+			case "getLong":
+			case "getDouble":
+			case "getBoolean":
+			case "getObject":
+				Object value = result.get(row[0], labels.get((int) a[0] - 1));
+				last[0] = value;
+				return convert(m.getReturnType(), value);
+			default:
+				return null;
+			}
+		});
+	}
+
+	private static Object convert(Class<?> type, Object value) {
+		if (type == String.class) {
+			return value == null ? null : value.toString();
+		}
+		if (type == int.class) {
+			return value == null ? 0 : ((Number) value).intValue();
+		}
+		if (type == long.class) {
+			return value == null ? 0L : ((Number) value).longValue();
+		}
+		if (type == double.class) {
+			return value == null ? 0D : ((Number) value).doubleValue();
+		}
+		if (type == boolean.class) {
+			return value != null && (Boolean) value;
+		}
+		return value;
+	}
+
+	private static String read(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] bytes = new byte[256];
+		int length;
+		while ((length = stream.read(bytes)) > 0) {
+			out.write(bytes, 0, length);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+}
@@ -0,0 +1,66 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LaneIntakeTest {
+
+	@Test
+	public void routeByTable() throws Exception {
+		LaneIntake intake = new LaneIntake(4, 40, QueueIntake::new);
+		String[] tables = { "userlog20170101", "userlog20170102", "userlog2201701", "userlog3" };
+		List<UserLog> logs = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			UserLog log = new UserLog();
+			logs.add(log);
+			assertTrue(intake.offer(log, tables[i % tables.length], null));
+		}
+		assertEquals(20, intake.size());
+		RecorderEvent[] events = new RecorderEvent[20];
+		for (int i = 0; i < events.length; i++) {
+			events[i] = new RecorderEvent();
+		}
+		Map<String, Integer> tableLanes = new HashMap<>();
+		int total = 0;
+		for (int lane = 0; lane < intake.getLaneNum(); lane++) {
+			int count = intake.lane(lane).drainTo(events, 0, events.length, 0);
+			total += count;
+			Map<String, Integer> lastIndexes = new HashMap<>();
+			for (int i = 0; i < count; i++) {
+				// 每张表只落在一条分道上，且保持提交顺序
+				Integer tableLane = tableLanes.putIfAbsent(events[i].tableName, lane);
+				assertTrue(tableLane == null || tableLane == lane);
+				int index = logs.indexOf(events[i].record);
+				assertTrue(index > lastIndexes.getOrDefault(events[i].tableName, -1));
+				lastIndexes.put(events[i].tableName, index);
+			}
+		}
+		assertEquals(20, total);
+		assertEquals(0, intake.size());
+	}
+
+	@Test
+	public void laneCapacity() throws Exception {
+		LaneIntake intake = new LaneIntake(2, 5, QueueIntake::new);
+		UserLog log = new UserLog();
+		for (int i = 0; i < 3; i++) {
+			assertTrue(intake.offer(log, "userlog", null));
+		}
+		assertFalse(intake.offer(log, "userlog", null));
+		assertNotNull(intake.dropOldest("userlog"));
+		assertTrue(intake.offer(log, "userlog", null));
+		RecorderEvent[] events = { new RecorderEvent(), new RecorderEvent(), new RecorderEvent(), new RecorderEvent() };
+		assertEquals(3, intake.drainTo(events, 0, events.length, 0));
+		assertSame(log, events[2].record);
+	}
+}
@@ -0,0 +1,76 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LoadDataTest {
+
+	@Test
+	public void encodeRow() throws Exception {
+		UserLog log = new UserLog();
+		log.name = "a\tb\nc\\d";
+		log.age = -42;
+		log.createTime = 1501138771000L;
+		LoadDataBuffer buffer = new LoadDataBuffer(4);
+		RecorderBinder binder = RecorderBinder.of(UserLog.class);
+		binder.writeRow(buffer, log);
+		log.name = "日志😀";
+		log.age = Integer.MIN_VALUE;
+		binder.writeRow(buffer, log);
+		String text = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals("a\\tb\\nc\\\\d\t-42\t\\N\t1501138771000\n日志😀\t-2147483648\t\\N\t1501138771000\n",
+				text);
+		buffer.reset();
+		assertEquals(0, buffer.size());
+	}
+
+	@Test
+	public void loadData() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.localInfile = true;
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.insertMode(UserLog.class, InsertMode.LOAD_DATA).tablePreCreateLeadMillis(0).threadCorePoolSize(1).build();
+		recorderProxy.startServer();
+		for (int i = 0; i < 10; i++) {
+			recorderProxy.execute(newLog(i));
+		}
+		recorderProxy.stopServer();
+		assertEquals(10, recorderProxy.getDoneLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		int rows = 0;
+		for (String stream : jdbc.streams) {
+			rows += stream.split("\n").length;
+		}
+		assertEquals(10, rows);
+		assertTrue(jdbc.streams.get(0).startsWith("name0\t0\t\\N\t1501138771000\n"));
+		List<String> sqls = jdbc.sqls();
+		for (String sql : sqls) {
+			assertFalse(sql.startsWith("insert"));
+		}
+		assertTrue(sqls.get(sqls.size() - 1).startsWith("load data local infile"));
+	}
+
+	@Test
+	public void fallBackWithoutDriverSupport() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.insertMode(UserLog.class, InsertMode.LOAD_DATA).tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		for (int i = 0; i < 10; i++) {
+			recorderProxy.execute(newLog(i));
+		}
+		recorderProxy.stopServer();
+		assertEquals(10, recorderProxy.getDoneLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		assertTrue(jdbc.streams.isEmpty());
+		List<String> sqls = jdbc.sqls();
+		assertTrue(sqls.get(sqls.size() - 1).endsWith("values (?,?,?,?)"));
+	}
+}
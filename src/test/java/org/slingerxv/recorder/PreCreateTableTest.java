@@ -0,0 +1,35 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PreCreateTableTest {
+
+	@Test
+	public void preCreateNextPeriod() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		ZoneId zoneId = ZoneId.of("Asia/Shanghai");
+		// 距离零点5分钟，在10分钟的提前量之内
+		long now = ZonedDateTime.of(2017, 7, 27, 23, 55, 0, 0, zoneId).toInstant().toEpochMilli();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.addScanPackage("org.slingerxv.recorder.precreate").zoneId(zoneId)
+				.tablePreCreateLeadMillis(TimeUnit.MINUTES.toMillis(10)).preCreateClock(() -> now).build();
+		recorderProxy.startServer();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (jdbc.creates("rolllog20170728") == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, jdbc.creates("rolllog20170727"));
+		assertEquals(1, jdbc.creates("rolllog20170728"));
+		// 下一次调度不再重复建表
+		recorderProxy.preCreateTables();
+		assertEquals(1, jdbc.creates("rolllog20170727"));
+		assertEquals(1, jdbc.creates("rolllog20170728"));
+		recorderProxy.stopServer();
+	}
+}
@@ -0,0 +1,48 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class PreparedInsertTest {
+
+	@Test
+	public void bindTypes() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.insertMode(TypedLog.class, InsertMode.PREPARED).tablePreCreateLeadMillis(0).threadCorePoolSize(1)
+				.build();
+		recorderProxy.startServer();
+		TypedLog full = new TypedLog();
+		full.name = "it's";
+		full.level = 3;
+		full.score = 1.5;
+		full.loginTime = new Date(1501138771000L);
+		full.channel = TypedLog.Channel.WEB;
+		full.createTime = 1501138772000L;
+		TypedLog empty = new TypedLog();
+		empty.createTime = 1501138772000L;
+		recorderProxy.executeAll(Arrays.asList(full, empty)).get();
+		recorderProxy.stopServer();
+		assertEquals(2, recorderProxy.getDoneLogNum());
+		FakeJdbc.Executed insert = null;
+		synchronized (jdbc.executed) {
+			for (FakeJdbc.Executed executed : jdbc.executed) {
+				if (executed.sql.startsWith("insert into `typedlog")) {
+					insert = executed;
+				}
+			}
+		}
+		assertTrue(insert.sql.endsWith("(`name`,`level`,`score`,`loginTime`,`channel`,`createTime`) values (?,?,?,?,?,?)"));
+		// 每列按类型绑定，空值使用setNull，时间按Timestamp、枚举按名称绑定
+		assertEquals(Arrays.asList("setString", "setInt", "setDouble", "setTimestamp", "setString", "setLong",
+				"setNull", "setInt", "setDouble", "setNull", "setNull", "setLong"), insert.setters);
+		assertEquals(Arrays.asList("it's", 3, 1.5, new Timestamp(1501138771000L), "WEB", 1501138772000L, null, 0, 0.0,
+				null, null, 1501138772000L), insert.parameters);
+	}
+}
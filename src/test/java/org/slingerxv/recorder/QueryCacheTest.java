@@ -0,0 +1,128 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class QueryCacheTest {
+	@Test
+	public void closedTable() throws Exception {
+		FakeJdbc jdbc = fakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).queryCacheSize(2).build();
+		recorderProxy.startServer();
+		RecorderQueryBuilder closed = new RecorderQueryBuilder().select("*").tables("userlog20170727");
+		List<UserLog> logs = recorderProxy.query(UserLog.class, closed);
+		assertEquals(3, logs.size());
+		assertEquals("name0", recorderProxy.query(UserLog.class, closed).get(0).name);
+		assertEquals(1, jdbc.executed.size());
+		assertEquals(42, recorderProxy.queryCount(UserLog.class, closed));
+		assertEquals(42, recorderProxy.queryCount(UserLog.class, closed));
+		assertEquals(2, jdbc.executed.size());
+		assertEquals(2, recorderProxy.getQueryCacheHitNum());
+		assertEquals(2, recorderProxy.getQueryCacheMissNum());
+
+		// 当前周期的表不缓存
+		String current = RecorderUtil.getTableNameResolver(UserLog.class, RollType.DAY_ROLL)
+				.resolve(System.currentTimeMillis());
+		RecorderQueryBuilder open = new RecorderQueryBuilder().select("*").tables(current);
+		recorderProxy.query(UserLog.class, open);
+		recorderProxy.query(UserLog.class, open);
+		assertEquals(4, jdbc.executed.size());
+		// 与当前周期的表union时同样不缓存
+		recorderProxy.query(UserLog.class, new RecorderQueryBuilder().select("*").tables("userlog20170727")
+				.unionAll(new RecorderQueryBuilder().select("*").tables(current)));
+		assertEquals(5, jdbc.executed.size());
+
+		// 超过缓存条数时淘汰最久未使用的结果
+		recorderProxy.query(UserLog.class, new RecorderQueryBuilder().select("*").tables("userlog20170726"));
+		assertEquals(6, jdbc.executed.size());
+		recorderProxy.query(UserLog.class, closed);
+		assertEquals(7, jdbc.executed.size());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void copies() throws Exception {
+		FakeJdbc jdbc = fakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).queryCacheSize(16).queryCacheOpenTtlMillis(60000).build();
+		recorderProxy.startServer();
+		RecorderQueryBuilder closed = new RecorderQueryBuilder().select("*").tables("userlog20170727");
+		// 未命中和命中时返回的都是可修改的副本，修改不影响缓存
+		List<UserLog> first = recorderProxy.query(UserLog.class, closed);
+		assertEquals(ArrayList.class, first.getClass());
+		first.get(0).name = "changed";
+		first.clear();
+		List<UserLog> second = recorderProxy.query(UserLog.class, closed);
+		assertEquals(ArrayList.class, second.getClass());
+		assertEquals(3, second.size());
+		assertEquals("name0", second.get(0).name);
+		List<UserLog> third = recorderProxy.query(UserLog.class, closed);
+		assertNotSame(second.get(0), third.get(0));
+		assertEquals(1, jdbc.executed.size());
+		// 日志类不同或参数类型不同时不共用缓存
+		assertEquals(42, recorderProxy.queryCount(UserLog.class, closed));
+		assertEquals(42, recorderProxy.queryCount(UserLog2.class, closed));
+		assertEquals(42, recorderProxy.queryCount(UserLog2.class, closed));
+		assertEquals(3, jdbc.executed.size());
+		RecorderQueryBuilder intAge = new RecorderQueryBuilder().select("*").tables("userlog20170727")
+				.where(new RecorderQueryBuilder.WhereConditionBuilder().eq("age", 1));
+		RecorderQueryBuilder longAge = new RecorderQueryBuilder().select("*").tables("userlog20170727")
+				.where(new RecorderQueryBuilder.WhereConditionBuilder().eq("age", 1L));
+		recorderProxy.query(UserLog.class, intAge);
+		recorderProxy.query(UserLog.class, longAge);
+		assertEquals(5, jdbc.executed.size());
+		assertTrue(recorderProxy.getQueryCacheHitNum() > 0);
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void openTtl() throws Exception {
+		FakeJdbc jdbc = fakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).queryCacheSize(16).queryCacheOpenTtlMillis(60000).build();
+		recorderProxy.startServer();
+		String current = RecorderUtil.getTableNameResolver(UserLog.class, RollType.DAY_ROLL)
+				.resolve(System.currentTimeMillis());
+		RecorderQueryBuilder open = new RecorderQueryBuilder().select("*").tables(current);
+		recorderProxy.query(UserLog.class, open);
+		recorderProxy.query(UserLog.class, open);
+		assertEquals(1, jdbc.executed.size());
+		recorderProxy.stopServer();
+	}
+
+	/**
+	 * 查询返回3行，count返回42
+	 */
+	private static FakeJdbc fakeJdbc() {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.results = sql -> new FakeJdbc.Result() {
+			@Override
+			public int size() {
+				return 3;
+			}
+
+			@Override
+			public Object get(int row, String column) {
+				switch (column) {
+				case "name":
+					return "name" + row;
+				case "pk_id":
+				case "age":
+					return 42;
+				case "createTime":
+					return 1501138771000L;
+				default:
+					return null;
+				}
+			}
+		};
+		return jdbc;
+	}
+}
@@ -0,0 +1,102 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.slingerxv.recorder.RecorderQueryBuilder.WhereConditionBuilder;
+
+public class RangeQueryTest {
+	private static final List<String> TABLES = Arrays.asList("userlog20170725", "userlog20170726", "userlog20170727");
+
+	@Test
+	public void queryRange() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.tables.addAll(TABLES);
+		jdbc.results = RangeQueryTest::tableResult;
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		jdbc.executed.clear();
+		long startTime = LocalDateTime.of(2017, 7, 25, 0, 0).atZone(ZoneId.systemDefault()).toInstant()
+				.toEpochMilli();
+		long endTime = LocalDateTime.of(2017, 7, 27, 12, 0).atZone(ZoneId.systemDefault()).toInstant()
+				.toEpochMilli();
+		// 三张表的age合起来为0~29，取倒序第3~7条
+		List<UserLog> logs = recorderProxy.queryRange(UserLog.class, startTime, endTime, new RecorderRangeQuery()
+				.where(new WhereConditionBuilder().eq("address", "x")).orderBy("age", true).limit(2, 5));
+		List<Integer> ages = new ArrayList<>();
+		for (UserLog log : logs) {
+			ages.add(log.age);
+		}
+		assertEquals(Arrays.asList(27, 26, 25, 24, 23), ages);
+		assertEquals(TABLES.size(), jdbc.executed.size());
+		for (FakeJdbc.Executed executed : jdbc.executed) {
+			// 每张表在查询线程中执行，时间范围、条件和limit下推到每张表
+			assertTrue(executed.thread, executed.thread.startsWith("RecorderProxy-Query-"));
+			String sql = executed.sql;
+			assertTrue(sql, sql.contains("where createTime >= ? and createTime <= ? and (address = ?)"));
+			assertEquals(Arrays.asList(startTime, endTime, "x"), executed.parameters);
+			assertTrue(sql, sql.contains("order by age desc"));
+			assertTrue(sql, sql.contains("limit 0,7"));
+		}
+
+		// 没有排序字段时按表的先后连接
+		logs = recorderProxy.queryRange(UserLog.class, startTime, endTime, new RecorderRangeQuery().limit(8, 4));
+		List<String> names = new ArrayList<>();
+		for (UserLog log : logs) {
+			names.add(log.name);
+		}
+		assertEquals(Arrays.asList("userlog20170725-8", "userlog20170725-9", "userlog20170726-0",
+				"userlog20170726-1"), names);
+		recorderProxy.stopServer();
+	}
+
+	/**
+	 * 第k张表有10行，age为k+3*j，按查询中的排序和limit返回
+	 */
+	private static FakeJdbc.Result tableResult(String sql) {
+		Matcher table = Pattern.compile("from (\\w+)").matcher(sql);
+		table.find();
+		String tableName = table.group(1);
+		int k = TABLES.indexOf(tableName);
+		List<Integer> ages = new ArrayList<>();
+		for (int j = 0; j < 10; j++) {
+			ages.add(k + 3 * j);
+		}
+		if (sql.contains("order by age desc")) {
+			Collections.reverse(ages);
+		}
+		Matcher limit = Pattern.compile("limit 0,(\\d+)").matcher(sql);
+		int rows = limit.find() ? Math.min(ages.size(), Integer.parseInt(limit.group(1))) : ages.size();
+		return new FakeJdbc.Result() {
+			@Override
+			public int size() {
+				return rows;
+			}
+
+			@Override
+			public Object get(int row, String column) {
+				switch (column) {
+				case "name":
+					return tableName + "-" + (ages.get(row) - k) / 3;
+				case "age":
+					return ages.get(row);
+				case "createTime":
+					return 0L;
+				default:
+					return null;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,79 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RecorderBinderTest {
+
+	@Test
+	public void readPlan() throws Exception {
+		RecorderBinder binder = RecorderBinder.of(UserLog.class);
+		AtomicInteger lookups = new AtomicInteger();
+		// 列顺序与字段不同，大小写不同，没有address列
+		List<String> labels = Arrays.asList("AGE", "createTime", "Name");
+		ResultSet resultSet = fakeResultSet(labels, lookups);
+		int[] plan = binder.plan(resultSet);
+		assertSame(plan, binder.plan(fakeResultSet(labels, lookups)));
+		UserLog log = (UserLog) binder.read(resultSet, plan);
+		assertEquals("hank", log.name);
+		assertEquals(18, log.age);
+		assertNull(log.address);
+		assertEquals(1501138771000L, log.createTime);
+		assertEquals(0, lookups.get());
+
+		// 列不同的结果集使用另一个计划
+		int[] other = binder.plan(fakeResultSet(Arrays.asList("name"), lookups));
+		RecorderBinder.Column[] columns = binder.getColumns();
+		int[] expected = new int[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			expected[i] = "name".equals(columns[i].name) ? 1 : 0;
+		}
+		assertArrayEquals(expected, other);
+	}
+
+	private static ResultSet fakeResultSet(List<String> labels, AtomicInteger lookups) {
+		ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+				RecorderBinderTest.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+				(proxy, m, a) -> {
+					switch (m.getName()) {
+					case "getColumnCount":
+						return labels.size();
+					case "getColumnLabel":
+						return labels.get((int) a[0] - 1);
+					default:
+						return null;
+					}
+				});
+		return (ResultSet) Proxy.newProxyInstance(RecorderBinderTest.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, (proxy, m, a) -> {
+					switch (m.getName()) {
+					case "getMetaData":
+						return metaData;
+					case "findColumn":
+						lookups.incrementAndGet();
+						return labels.indexOf(a[0]) + 1;
+					case "getString":
+						return "Name".equals(labels.get((int) a[0] - 1)) ? "hank" : null;
+					case "getInt":
+						return 18;
+					case "getLong":
+						return 1501138771000L;
+					case "wasNull":
+						return false;
+					default:
+						return null;
+					}
+				});
+	}
+}
@@ -0,0 +1,86 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class RecorderCursorTest {
+	@Test
+	public void cursor() throws Exception {
+		FakeJdbc jdbc = fakeJdbc(1000000);
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		jdbc.closedConnections.set(0);
+		RecorderQueryBuilder builder = new RecorderQueryBuilder().select("*").tables("userlog20170727");
+		try (RecorderCursor<UserLog> cursor = recorderProxy.cursor(UserLog.class, builder)) {
+			for (int i = 0; i < 10; i++) {
+				UserLog log = cursor.next();
+				assertEquals("name" + i, log.name);
+				assertEquals(i, log.age);
+			}
+			// 只读取了取走的行
+			assertEquals(10, jdbc.fetchedRows.get());
+			assertEquals(Integer.MIN_VALUE, (int) jdbc.fetchSize);
+			assertEquals(0, jdbc.closedConnections.get());
+		}
+		assertEquals(1, jdbc.closedConnections.get());
+
+		jdbc.closedConnections.set(0);
+		try (Stream<UserLog> stream = recorderProxy.stream(UserLog.class, builder)) {
+			assertEquals(500000, stream.mapToLong(log -> log.age).filter(age -> age % 2 == 0).count());
+		}
+		assertEquals(1, jdbc.closedConnections.get());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void closeAfterLastRow() throws Exception {
+		FakeJdbc jdbc = fakeJdbc(3);
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		jdbc.closedConnections.set(0);
+		RecorderCursor<UserLog> cursor = recorderProxy.cursor(UserLog.class,
+				new RecorderQueryBuilder().select("*").tables("userlog20170727"));
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		assertEquals(3, count);
+		// 读完后自动释放连接
+		assertEquals(1, jdbc.closedConnections.get());
+		recorderProxy.stopServer();
+	}
+
+	/**
+	 * 查询返回rows行，每行在next时才生成
+	 */
+	private static FakeJdbc fakeJdbc(int rows) {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.results = sql -> new FakeJdbc.Result() {
+			@Override
+			public int size() {
+				return rows;
+			}
+
+			@Override
+			public Object get(int row, String column) {
+				switch (column) {
+				case "name":
+					return "name" + row;
+				case "age":
+					return row;
+				case "createTime":
+					return 1501138771000L;
+				default:
+					return null;
+				}
+			}
+		};
+		return jdbc;
+	}
+}
@@ -0,0 +1,191 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecorderJournalTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replay() throws Exception {
+		File dir = folder.newFolder();
+		try (RecorderJournal journal = new RecorderJournal(dir, 256)) {
+			for (int i = 0; i < 10; i++) {
+				assertTrue(journal.spill("userlog20170727", newLog(i)));
+			}
+			assertTrue(dir.list().length > 1);
+			List<UserLog> replayed = new ArrayList<>();
+			assertEquals(10, journal.replay(3, (events, size) -> {
+				for (int i = 0; i < size; i++) {
+					assertEquals("userlog20170727", events[i].tableName);
+					replayed.add((UserLog) events[i].record);
+				}
+			}));
+			for (int i = 0; i < 10; i++) {
+				UserLog log = replayed.get(i);
+				assertEquals("name" + i, log.name);
+				assertEquals(i, log.age);
+				assertNull(log.address);
+				assertEquals(1501138771000L + i, log.createTime);
+			}
+			assertFalse(journal.hasPending());
+			assertEquals(0, dir.list().length);
+		}
+	}
+
+	@Test
+	public void replayActiveInPlace() throws Exception {
+		File dir = folder.newFolder();
+		try (RecorderJournal journal = new RecorderJournal(dir, 4096)) {
+			for (int i = 0; i < 3; i++) {
+				journal.spill("userlog20170727", newLog(i));
+			}
+			// 数据库不可用时反复回放失败，不会切换新段
+			for (int i = 0; i < 5; i++) {
+				try {
+					journal.replay(10, (events, size) -> {
+						throw new SQLTransientConnectionException("down", "08001");
+					});
+				} catch (SQLTransientConnectionException e) {
+					// 预期
+				}
+				assertEquals(1, dir.list().length);
+				assertTrue(journal.spill("userlog20170727", newLog(3 + i)));
+			}
+			assertEquals(1, dir.list().length);
+			List<Integer> ages = new ArrayList<>();
+			assertEquals(8, journal.replay(3, (events, size) -> {
+				for (int i = 0; i < size; i++) {
+					ages.add(((UserLog) events[i].record).age);
+				}
+			}));
+			assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), ages);
+			assertFalse(journal.hasPending());
+			assertEquals(0, dir.list().length);
+			assertTrue(journal.spill("userlog20170727", newLog(8)));
+			assertTrue(journal.hasPending());
+		}
+	}
+
+	@Test
+	public void resumeAfterReopen() throws Exception {
+		File dir = folder.newFolder();
+		try (RecorderJournal journal = new RecorderJournal(dir, 4096)) {
+			for (int i = 0; i < 10; i++) {
+				journal.spill("userlog20170727", newLog(i));
+			}
+			// 第二批写入失败，回放停止
+			List<Integer> ages = new ArrayList<>();
+			try {
+				journal.replay(4, (events, size) -> {
+					if (!ages.isEmpty()) {
+						throw new SQLTransientConnectionException("down", "08001");
+					}
+					for (int i = 0; i < size; i++) {
+						ages.add(((UserLog) events[i].record).age);
+					}
+				});
+			} catch (SQLTransientConnectionException e) {
+				// 预期
+			}
+			assertEquals(4, ages.size());
+		}
+		// 模拟进程重启
+		try (RecorderJournal journal = new RecorderJournal(dir, 4096)) {
+			assertTrue(journal.hasPending());
+			List<Integer> ages = new ArrayList<>();
+			assertEquals(6, journal.replay(4, (events, size) -> {
+				for (int i = 0; i < size; i++) {
+					ages.add(((UserLog) events[i].record).age);
+				}
+			}));
+			assertEquals(4, (int) ages.get(0));
+			assertTrue(journal.spill("userlog20170727", newLog(10)));
+		}
+	}
+
+	@Test
+	public void dropSchemaChanged() throws Exception {
+		File dir = folder.newFolder();
+		try (RecorderJournal journal = new RecorderJournal(dir, 4096)) {
+			for (int i = 0; i < 3; i++) {
+				journal.spill("userlog20170727", newLog(i));
+			}
+		}
+		// 改写第二条记录的结构摘要，模拟日志类结构在重启前后发生变化
+		try (RandomAccessFile file = new RandomAccessFile(dir.listFiles()[0], "rw")) {
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+			int second = 8 + 4 + buffer.getInt(8);
+			// 跳过记录长度、表名和类名
+			int position = second + 4 + 4 + "userlog20170727".getBytes(StandardCharsets.UTF_8).length + 4
+					+ UserLog.class.getName().getBytes(StandardCharsets.UTF_8).length;
+			buffer.putInt(position, buffer.getInt(position) + 1);
+		}
+		try (RecorderJournal journal = new RecorderJournal(dir, 4096)) {
+			List<Integer> ages = new ArrayList<>();
+			List<Class<? extends IRecorder>> dropped = new ArrayList<>();
+			assertEquals(2, journal.replay(10, new RecorderJournal.ReplayHandler() {
+				@Override
+				public void write(RecorderEvent[] events, int size) {
+					for (int i = 0; i < size; i++) {
+						ages.add(((UserLog) events[i].record).age);
+					}
+				}
+
+				@Override
+				public void drop(String tableName, Class<? extends IRecorder> clss) {
+					dropped.add(clss);
+				}
+			}));
+			assertEquals(Arrays.asList(0, 2), ages);
+			assertEquals(Collections.singletonList(UserLog.class), dropped);
+		}
+	}
+
+	@Test
+	public void spillWhenDatabaseDown() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		File dir = folder.newFolder();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.journal(dir).journalReplayIntervalMillis(50).tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		jdbc.down = true;
+		for (int i = 0; i < 5; i++) {
+			recorderProxy.execute(newLog(i));
+		}
+		long deadline = System.currentTimeMillis() + 5000;
+		while (recorderProxy.getSpilledLogNum() < 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(5, recorderProxy.getSpilledLogNum());
+		assertEquals(0, recorderProxy.getDoneLogNum());
+		jdbc.down = false;
+		while (recorderProxy.getDoneLogNum() < 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		recorderProxy.stopServer();
+		assertEquals(5, recorderProxy.getDoneLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		List<String> sqls = jdbc.sqls();
+		assertTrue(sqls.get(sqls.size() - 1).startsWith("insert into `"));
+	}
+}
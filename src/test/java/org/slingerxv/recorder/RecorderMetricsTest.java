@@ -0,0 +1,112 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+public class RecorderMetricsTest {
+
+	@Test
+	public void histogram() {
+		for (long value = 0; value < 100000; value += 7) {
+			assertTrue(RecorderHistogram.highestValue(RecorderHistogram.index(value)) >= value);
+			assertTrue(RecorderHistogram.highestValue(RecorderHistogram.index(value)) <= value * 1.04 + 1);
+		}
+		assertTrue(RecorderHistogram.highestValue(RecorderHistogram.index(Long.MAX_VALUE)) == Long.MAX_VALUE);
+		RecorderHistogram histogram = new RecorderHistogram();
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(10000, histogram.getCount());
+		assertEquals(10000, histogram.getMax());
+		assertEquals(5000.5, histogram.getMean(), 0.001);
+		assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.04);
+		assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.04);
+		assertEquals(10000, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void tableCounters() {
+		ZoneId zoneId = ZoneId.of("UTC");
+		AtomicLong clock = new AtomicLong(ZonedDateTime.of(2017, 7, 27, 12, 0, 0, 0, zoneId).toInstant().toEpochMilli());
+		RecorderMetrics metrics = new RecorderMetrics(clss -> new TableNameResolver(clss, RollType.DAY_ROLL, zoneId),
+				clock::get);
+		metrics.done("userlog20170727", UserLog.class, 1);
+		metrics.done("userlog20170726", UserLog.class, 2);
+		metrics.done("userlog220170727", UserLog2.class, 3);
+		// 回放写入更早的表不影响当前和上一周期的计数
+		metrics.done("userlog20170725", UserLog.class, 4);
+		metrics.done("userlog20170727", UserLog.class, 5);
+		metrics.lost("userlog20170727", UserLog.class, 6);
+		assertEquals(4, metrics.getTableCounters().size());
+		assertEquals(6, metrics.getTableCounters().get("userlog20170727").getDoneLogNum());
+		assertEquals(6, metrics.getTableCounters().get("userlog20170727").getLostLogNum());
+		assertEquals(2, metrics.getTableCounters().get("userlog20170726").getDoneLogNum());
+		assertEquals(4, metrics.getTableCounters().get("userlog20170725").getDoneLogNum());
+		// 滚动到下一周期后清理早于上一周期的表，日志类上的累计不受影响
+		clock.set(ZonedDateTime.of(2017, 7, 28, 1, 0, 0, 0, zoneId).toInstant().toEpochMilli());
+		metrics.done("userlog20170728", UserLog.class, 7);
+		assertEquals(3, metrics.getTableCounters().size());
+		assertTrue(!metrics.getTableCounters().containsKey("userlog20170725"));
+		assertTrue(!metrics.getTableCounters().containsKey("userlog20170726"));
+		assertEquals(6, metrics.getTableCounters().get("userlog20170727").getDoneLogNum());
+		assertEquals(7, metrics.getTableCounters().get("userlog20170728").getDoneLogNum());
+		assertEquals(3, metrics.getTableCounters().get("userlog220170727").getDoneLogNum());
+		assertEquals(19, metrics.getClassCounters().get(UserLog.class).getDoneLogNum());
+	}
+
+	@Test
+	public void metrics() throws Exception {
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder()
+				.dataSource(new FakeJdbc()::dataSource).tablePreCreateLeadMillis(0)
+				.threadCorePoolSize(1).jmxName("metrics-test").build();
+		recorderProxy.startServer();
+		List<IRecorder> logs = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			logs.add(new UserLog());
+			logs.add(new UserLog2());
+		}
+		recorderProxy.executeAll(logs).get(5, TimeUnit.SECONDS);
+		RecorderMetrics metrics = recorderProxy.getMetrics();
+		assertEquals(10, metrics.getClassCounters().get(UserLog.class).getDoneLogNum());
+		assertEquals(10, metrics.getClassCounters().get(UserLog2.class).getDoneLogNum());
+		assertEquals(2, metrics.getTableCounters().size());
+		assertEquals(2, metrics.getDdlNum());
+		// 确认在批次中每张表写完时完成，提交延迟在整批写完后才记录
+		long deadline = System.currentTimeMillis() + 5000;
+		while (metrics.getCommitLatency().getCount() < 20 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(20, metrics.getCommitLatency().getCount());
+		assertTrue(metrics.getExecuteTime().getCount() >= 2);
+		assertEquals(20, (long) (metrics.getBatchSizes().getMean() * metrics.getBatchSizes().getCount()));
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("org.slingerxv.recorder:type=RecorderProxy,name=\"metrics-test\"");
+		assertEquals(20L, server.getAttribute(name, "DoneLogNum"));
+		// 各过载策略的计数
+		assertEquals(0L, server.getAttribute(name, "BlockedLogNum"));
+		assertEquals(0L, server.getAttribute(name, "DroppedNewestLogNum"));
+		assertEquals(0L, server.getAttribute(name, "DroppedOldestLogNum"));
+		assertEquals(2, ((TabularData) server.getAttribute(name, "TableDoneLogNums")).size());
+		assertTrue((Double) server.getAttribute(name, "CommitLatencyP99Millis") > 0);
+		recorderProxy.stopServer();
+		assertTrue(!server.isRegistered(name));
+	}
+}
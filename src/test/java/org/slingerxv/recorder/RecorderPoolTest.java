@@ -0,0 +1,66 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RecorderPoolTest {
+
+	@Test
+	public void reset() throws Exception {
+		RecorderPool pool = new RecorderPool(1);
+		UserLog log = pool.acquire(UserLog.class);
+		log.name = "name";
+		log.age = 10;
+		log.createTime = 0;
+		// 超出数量的实例不受管理
+		UserLog extra = pool.acquire(UserLog.class);
+		pool.release(log);
+		pool.release(extra);
+		// 不是由池取出的实例和重复放回的实例不回收
+		pool.release(new UserLog());
+		pool.release(log);
+		assertEquals(1, pool.available(UserLog.class));
+		UserLog reused = pool.acquire(UserLog.class);
+		assertSame(log, reused);
+		assertNull(reused.name);
+		assertEquals(0, reused.age);
+		assertTrue(reused.createTime > 0);
+		assertEquals(0, pool.available(UserLog.class));
+		// 没有取过实例的日志类不回收
+		pool.release(new UserLog2());
+		assertEquals(0, pool.available(UserLog2.class));
+	}
+
+	@Test
+	public void recycle() throws Exception {
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder()
+				.dataSource(new FakeJdbc()::dataSource).tablePreCreateLeadMillis(0)
+				.recorderPoolSize(16).build();
+		recorderProxy.startServer();
+		UserLog log = recorderProxy.acquire(UserLog.class);
+		log.name = "name";
+		recorderProxy.executeAsync(log).get(5, TimeUnit.SECONDS);
+		// 确认在回收之前完成
+		long deadline = System.currentTimeMillis() + 5000;
+		while (recorderProxy.getPool().available(UserLog.class) == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		UserLog reused = recorderProxy.acquire(UserLog.class);
+		assertSame(log, reused);
+		assertNull(reused.name);
+		recorderProxy.stopServer();
+		assertEquals(1, recorderProxy.getDoneLogNum());
+
+		RecorderProxy unpooled = new RecorderProxy.RecorderProxyBuilder()
+				.dataSource(new FakeJdbc()::dataSource).build();
+		assertNotSame(unpooled.acquire(UserLog.class), unpooled.acquire(UserLog.class));
+		assertNull(unpooled.getPool());
+	}
+}
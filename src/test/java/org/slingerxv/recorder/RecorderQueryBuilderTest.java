@@ -0,0 +1,80 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+import org.slingerxv.recorder.RecorderQueryBuilder.WhereConditionBuilder;
+
+public class RecorderQueryBuilderTest {
+
+	@Test
+	public void parameters() throws Exception {
+		RecorderQueryBuilder subQuery = new RecorderQueryBuilder().select("*").tables("userlog20170727")
+				.where(new WhereConditionBuilder().eq("name", "a'b"));
+		RecorderQueryBuilder builder = new RecorderQueryBuilder().select("*").tables(subQuery)
+				.where(new WhereConditionBuilder().gt("age", 18, false).and().like("name", "user", false, true))
+				.unionAll(new RecorderQueryBuilder().select("*").tables("userlog20170728")
+						.where(new WhereConditionBuilder().notEq("address", "c")));
+		String sql = builder.build();
+		// 值只出现在参数中，语句与值无关
+		assertFalse(sql, sql.contains("a'b"));
+		assertEquals(4, sql.length() - sql.replace("?", "").length());
+		assertEquals(Arrays.asList("a'b", 18, "user%", "c"), builder.getParameters());
+		// 不同的值生成相同的语句
+		String other = new RecorderQueryBuilder().select("*")
+				.tables(new RecorderQueryBuilder().select("*").tables("userlog20170727")
+						.where(new WhereConditionBuilder().eq("name", "other")))
+				.where(new WhereConditionBuilder().gt("age", 60, false).and().like("name", "admin", false, true))
+				.unionAll(new RecorderQueryBuilder().select("*").tables("userlog20170728")
+						.where(new WhereConditionBuilder().notEq("address", "d")))
+				.build();
+		assertEquals(sql, other);
+	}
+
+	@Test
+	public void quotedValueRejected() throws Exception {
+		// 旧写法手动加引号，绑定后会比较带引号的字面量，直接拒绝
+		try {
+			new WhereConditionBuilder().eq("address", "'x'");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("'x'"));
+		}
+		try {
+			new WhereConditionBuilder().like("address", "'x'", false, true);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		// 迁移：值去掉引号按参数绑定，列表达式改用xxxExpr
+		RecorderQueryBuilder builder = new RecorderQueryBuilder().select("*").tables("userlog20170727")
+				.where(new WhereConditionBuilder().eq("address", "x").and().gtExpr("updateTime", "createTime", true));
+		String sql = builder.build();
+		assertTrue(sql, sql.contains("address = ? and updateTime >= createTime"));
+		assertEquals(Collections.singletonList("x"), builder.getParameters());
+	}
+
+	@Test
+	public void bindTypes() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		Date time = new Date(1501138771000L);
+		try (PreparedStatement statement = jdbc.dataSource().getConnection().prepareStatement("select ?")) {
+			RecorderUtil.bindParameters(statement,
+					Arrays.asList(1L, 2, 1.5, true, time, TypedLog.Channel.WEB, "a"));
+			statement.executeUpdate();
+		}
+		FakeJdbc.Executed executed = jdbc.executed.get(0);
+		assertEquals(Arrays.asList("setLong", "setInt", "setDouble", "setBoolean", "setTimestamp", "setString",
+				"setString"), executed.setters);
+		assertEquals(Arrays.asList(1L, 2, 1.5, true, new Timestamp(time.getTime()), "WEB", "a"),
+				executed.parameters);
+	}
+}
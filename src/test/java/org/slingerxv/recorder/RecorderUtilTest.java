@@ -1,6 +1,13 @@
 package org.slingerxv.recorder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -18,4 +25,69 @@ public class RecorderUtilTest {
 		assertEquals("userlog4", logTableName3);
 	}
 
+	@Test
+	public void buildInsertTableSqlEscaped() throws Exception {
+		UserLog log = new UserLog();
+		log.name = "it's a\\b\nc";
+		log.age = 1;
+		log.createTime = 1501138771000L;
+		assertEquals("insert into `userlog20170727`(`name`,`age`,`address`,`createTime`) values "
+				+ "('it\\'s a\\\\b\\nc','1','null','1501138771000')",
+				RecorderUtil.buildInsertTableSqlMYSQL("userlog20170727", Collections.singletonList(log)));
+	}
+
+	@Test
+	public void getLogTableNameWithZone() {
+		ZoneId old = RecorderUtil.getZoneId();
+		try {
+			RecorderUtil.setZoneId(ZoneId.of("Asia/Shanghai"));
+			// 2017-07-27 23:59:59.999 +08:00
+			String today = RecorderUtil.getLogTableName(new UserLog(), 1501171199999L);
+			assertEquals("userlog20170727", today);
+			assertSame(today, RecorderUtil.getLogTableName(new UserLog(), 1501171199000L));
+			assertEquals("userlog20170728", RecorderUtil.getLogTableName(new UserLog(), 1501171200000L));
+			// 历史时间不影响缓存
+			assertEquals("userlog20170726", RecorderUtil.getLogTableName(new UserLog(), 1501084800000L - 1));
+			assertEquals("userlog20170728", RecorderUtil.getLogTableName(new UserLog(), 1501171200001L));
+			RecorderUtil.setZoneId(ZoneId.of("UTC"));
+			assertEquals("userlog20170727", RecorderUtil.getLogTableName(new UserLog(), 1501171200000L));
+		} finally {
+			RecorderUtil.setZoneId(old);
+		}
+	}
+
+	@Test
+	public void proxyZoneId() {
+		ZoneId old = RecorderUtil.getZoneId();
+		try {
+			RecorderUtil.setZoneId(ZoneId.of("Asia/Shanghai"));
+			RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(new FakeJdbc()::dataSource)
+					.zoneId(ZoneId.of("UTC")).build();
+			// 代理的时区不影响全局时区
+			assertEquals(ZoneId.of("Asia/Shanghai"), RecorderUtil.getZoneId());
+			assertEquals("userlog20170728", RecorderUtil.getLogTableName(new UserLog(), 1501171200000L));
+			assertEquals("userlog20170727", recorderProxy.getLogTableName(new UserLog(), 1501171200000L));
+		} finally {
+			RecorderUtil.setZoneId(old);
+		}
+	}
+
+	@Test
+	public void getRelativeTableNames() throws Exception {
+		ZoneId old = RecorderUtil.getZoneId();
+		try {
+			RecorderUtil.setZoneId(ZoneId.of("Asia/Shanghai"));
+			// 2017-07-27 14:59:31 ~ 2017-07-29 14:59:31 +08:00
+			long start = 1501138771000L;
+			long end = start + 2 * 24 * 3600 * 1000L;
+			assertEquals(new HashSet<>(Arrays.asList("userlog20170727", "userlog20170728", "userlog20170729")),
+					RecorderUtil.getRelativeTableNames(UserLog.class, start, end));
+			Set<String> months = RecorderUtil.getRelativeTableNames(UserLog2.class, start, end + 5 * 24 * 3600 * 1000L);
+			assertEquals(new HashSet<>(Arrays.asList("userlog2201707", "userlog2201708")), months);
+			assertEquals(new HashSet<>(Arrays.asList("userlog4")),
+					RecorderUtil.getRelativeTableNames(UserLog4.class, start, end));
+		} finally {
+			RecorderUtil.setZoneId(old);
+		}
+	}
 }
@@ -0,0 +1,152 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RecorderWriterTest {
+
+	@Test
+	public void groupByTable() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			writer.flush(mixedBatch(), 6);
+		}
+		// 两张表交替出现的日志按表合并为两条多行INSERT
+		List<String> inserts = inserts(jdbc);
+		assertEquals(2, inserts.size());
+		assertEquals(3, rows(inserts.get(0)));
+		assertEquals(3, rows(inserts.get(1)));
+		assertTrue(inserts.get(0).startsWith("insert into `userlog20170727`"));
+		assertTrue(inserts.get(1).startsWith("insert into `userlog220170727`"));
+		assertEquals(6, recorderProxy.getDoneLogNum());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void tableFailure() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.insertError = new SQLException("Data too long", "22001", 1406);
+		jdbc.insertErrorTable = "userlog220170727";
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			writer.flush(mixedBatch(), 6);
+		}
+		// 一张表写入失败只影响该表的日志
+		assertEquals(3, recorderProxy.getDoneLogNum());
+		assertEquals(3, recorderProxy.getLostLogNum());
+		RecorderMetrics metrics = recorderProxy.getMetrics();
+		assertEquals(3, metrics.getClassCounters().get(UserLog.class).getDoneLogNum());
+		assertEquals(0, metrics.getClassCounters().get(UserLog.class).getLostLogNum());
+		assertEquals(0, metrics.getClassCounters().get(UserLog2.class).getDoneLogNum());
+		assertEquals(3, metrics.getClassCounters().get(UserLog2.class).getLostLogNum());
+		assertEquals(1, inserts(jdbc).size());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void lingerFlushesPartialBatch() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.batchSize(100).maxLingerMillis(200).threadCorePoolSize(1).tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		List<IRecorder> logs = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			logs.add(newLog(i));
+		}
+		// 批次未满时等待时间到后写入，不需要停止代理
+		recorderProxy.executeAll(logs).get(5, TimeUnit.SECONDS);
+		assertEquals(3, recorderProxy.getDoneLogNum());
+		List<String> inserts = inserts(jdbc);
+		assertEquals(1, inserts.size());
+		assertEquals(3, rows(inserts.get(0)));
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void knownTables() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.tables.add("userlog20170727");
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		// 启动时读取一次已有的表
+		int lookups = jdbc.tableLookups.get();
+		assertTrue(lookups > 0);
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			for (int i = 0; i < 3; i++) {
+				writer.flush(mixedBatch(), 6);
+			}
+		}
+		// 写入时不再查询表名，已有的表不建表，新表只建一次
+		assertEquals(lookups, jdbc.tableLookups.get());
+		assertEquals(0, jdbc.creates("userlog20170727"));
+		assertEquals(1, jdbc.creates("userlog220170727"));
+		assertEquals(18, recorderProxy.getDoneLogNum());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void recreateMissingTable() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.tables.add("userlog20170727");
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		// 表被外部删除：失效后重建并重试一次
+		jdbc.errors.add(new SQLException("Table doesn't exist", "42S02", 1146));
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			writer.flush(new RecorderEvent[] { new RecorderEvent(newLog(0), "userlog20170727", null) }, 1);
+		}
+		assertEquals(1, jdbc.creates("userlog20170727"));
+		assertEquals(1, recorderProxy.getDoneLogNum());
+		// 重建后仍然不存在时不再重试
+		for (int i = 0; i < 3; i++) {
+			jdbc.errors.add(new SQLException("Table doesn't exist", "42S02", 1146));
+		}
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			writer.flush(new RecorderEvent[] { new RecorderEvent(newLog(1), "userlog20170727", null) }, 1);
+		}
+		assertEquals(1, jdbc.errors.size());
+		assertEquals(2, jdbc.creates("userlog20170727"));
+		assertEquals(1, recorderProxy.getDoneLogNum());
+		assertEquals(1, recorderProxy.getLostLogNum());
+		jdbc.errors.clear();
+		recorderProxy.stopServer();
+	}
+
+	private static RecorderEvent[] mixedBatch() {
+		RecorderEvent[] events = new RecorderEvent[6];
+		for (int i = 0; i < events.length; i += 2) {
+			events[i] = new RecorderEvent(newLog(i), "userlog20170727", null);
+			events[i + 1] = new RecorderEvent(new UserLog2(), "userlog220170727", null);
+		}
+		return events;
+	}
+
+	static List<String> inserts(FakeJdbc jdbc) {
+		List<String> inserts = new ArrayList<>();
+		for (String sql : jdbc.sqls()) {
+			if (sql.startsWith("insert")) {
+				inserts.add(sql);
+			}
+		}
+		return inserts;
+	}
+
+	private static int rows(String insert) {
+		return insert.split("\\),\\(").length;
+	}
+}
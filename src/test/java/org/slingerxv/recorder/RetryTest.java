@@ -0,0 +1,99 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RetryTest {
+
+	@Test
+	public void transientError() {
+		assertTrue(RecorderUtil.isTransient(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+		assertTrue(RecorderUtil.isTransient(new SQLException("Deadlock found", "40001", 1213)));
+		assertTrue(RecorderUtil.isTransient(new SQLTransientConnectionException("Connection reset")));
+		assertFalse(RecorderUtil.isTransient(new SQLException("Data too long", "22001", 1406)));
+	}
+
+	@Test
+	public void backoff() {
+		RecorderRetry retry = new RecorderRetry(
+				new RecorderProxy.RecorderProxyBuilder().dataSource(new FakeJdbc()::dataSource).build(), 10, 100,
+				1000);
+		try {
+			for (int i = 0; i < 100; i++) {
+				long first = TimeUnit.NANOSECONDS.toMillis(retry.backoff(1));
+				assertTrue(first >= 50 && first <= 100);
+				long third = TimeUnit.NANOSECONDS.toMillis(retry.backoff(3));
+				assertTrue(third >= 200 && third <= 400);
+				long last = TimeUnit.NANOSECONDS.toMillis(retry.backoff(40));
+				assertTrue(last >= 500 && last <= 1000);
+			}
+		} finally {
+			retry.close();
+		}
+	}
+
+	@Test
+	public void retrySucceeded() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).retryAttempts(3).retryBackoffMillis(10).build();
+		recorderProxy.startServer();
+		jdbc.errors.add(new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+		jdbc.errors.add(new SQLException("Deadlock found", "40001", 1213));
+		recorderProxy.executeAsync(newLog(0)).get(5, TimeUnit.SECONDS);
+		assertEquals(1, recorderProxy.getDoneLogNum());
+		assertEquals(2, recorderProxy.getRetriedLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		recorderProxy.stopServer();
+	}
+
+	@Test
+	public void deadLetter() throws Exception {
+		File directory = Files.createTempDirectory("recorder-dead-letter").toFile();
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.tablePreCreateLeadMillis(0).retryAttempts(2).retryBackoffMillis(10).deadLetter(directory).build();
+		recorderProxy.startServer();
+		for (int i = 0; i < 3; i++) {
+			jdbc.errors.add(new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+		}
+		CompletableFuture<Void> future = recorderProxy.executeAsync(newLog(0));
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RecorderWriteException);
+		}
+		assertEquals(2, recorderProxy.getRetriedLogNum());
+		assertEquals(1, recorderProxy.getDeadLetterLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		// 不可重试的异常直接写入死信
+		jdbc.errors.add(new SQLException("Data too long", "22001", 1406));
+		try {
+			recorderProxy.executeAsync(newLog(1)).get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RecorderWriteException);
+		}
+		assertEquals(2, recorderProxy.getRetriedLogNum());
+		assertEquals(2, recorderProxy.getDeadLetterLogNum());
+		assertEquals(2, recorderProxy.redriveDeadLetters());
+		assertEquals(0, recorderProxy.redriveDeadLetters());
+		recorderProxy.stopServer();
+		assertEquals(2, recorderProxy.getDoneLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+	}
+}
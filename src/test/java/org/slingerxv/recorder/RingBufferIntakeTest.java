@@ -0,0 +1,106 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RingBufferIntakeTest {
+
+	@Test
+	public void capacity() throws Exception {
+		RingBufferIntake intake = new RingBufferIntake(5, WaitStrategy.SLEEPING);
+		assertEquals(8, intake.capacity());
+		UserLog log = new UserLog();
+		for (int i = 0; i < 8; i++) {
+			assertTrue(intake.offer(log, "userlog", null));
+		}
+		assertFalse(intake.offer(log, "userlog", null));
+		assertEquals(8, intake.size());
+		RecorderEvent[] events = newEvents(3);
+		assertEquals(3, intake.drainTo(events, 0, 3, 0));
+		assertSame(log, events[0].record);
+		assertEquals("userlog", events[2].tableName);
+		assertTrue(intake.offer(log, "userlog", null));
+		assertEquals(6, intake.size());
+	}
+
+	@Test
+	public void timeout() throws Exception {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			RingBufferIntake intake = new RingBufferIntake(4, waitStrategy);
+			long start = System.nanoTime();
+			assertEquals(0, intake.drainTo(newEvents(1), 0, 1, TimeUnit.MILLISECONDS.toNanos(20)));
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+		}
+	}
+
+	@Test
+	public void multiProducerMultiConsumer() throws Exception {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			final RingBufferIntake intake = new RingBufferIntake(64, waitStrategy);
+			final int producers = 4;
+			final int perProducer = 5000;
+			final List<UserLog> logs = new ArrayList<>();
+			for (int i = 0; i < producers * perProducer; i++) {
+				logs.add(new UserLog());
+			}
+			final Map<IRecorder, Boolean> received = new IdentityHashMap<>();
+			List<Thread> threads = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				final int from = p * perProducer;
+				threads.add(new Thread(() -> {
+					for (int i = from; i < from + perProducer; i++) {
+						while (!intake.offer(logs.get(i), "userlog", null)) {
+							Thread.yield();
+						}
+					}
+				}));
+			}
+			for (int c = 0; c < 2; c++) {
+				threads.add(new Thread(() -> {
+					RecorderEvent[] events = newEvents(16);
+					try {
+						while (true) {
+							int count = intake.drainTo(events, 0, events.length, TimeUnit.MILLISECONDS.toNanos(200));
+							if (count == 0) {
+								return;
+							}
+							synchronized (received) {
+								for (int i = 0; i < count; i++) {
+									assertTrue(received.put(events[i].record, Boolean.TRUE) == null);
+								}
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}));
+			}
+			for (Thread thread : threads) {
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(waitStrategy.name(), logs.size(), received.size());
+			assertEquals(0, intake.size());
+		}
+	}
+
+	private static RecorderEvent[] newEvents(int size) {
+		RecorderEvent[] events = new RecorderEvent[size];
+		for (int i = 0; i < size; i++) {
+			events[i] = new RecorderEvent();
+		}
+		return events;
+	}
+}
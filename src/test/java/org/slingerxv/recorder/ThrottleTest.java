@@ -0,0 +1,111 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ThrottleTest {
+
+	@Throttle(sampleRate = 0.5, sampleKey = "age")
+	public static class SampledLog extends UserLog {
+	}
+
+	@Test
+	public void rateLimit() {
+		RecorderThrottle.Spec spec = new RecorderThrottle.Spec();
+		spec.permitsPerSecond = 1;
+		spec.burst = 5;
+		RecorderThrottle throttle = RecorderThrottle.of(UserLog.class, spec);
+		int acquired = 0;
+		for (int i = 0; i < 100; i++) {
+			if (throttle.tryAcquire()) {
+				acquired++;
+			}
+		}
+		assertEquals(5, acquired);
+		assertNull(RecorderThrottle.of(UserLog.class, null));
+	}
+
+	@Test
+	public void sample() {
+		RecorderThrottle throttle = RecorderThrottle.of(SampledLog.class, null);
+		int kept = 0;
+		for (int i = 0; i < 10000; i++) {
+			SampledLog log = new SampledLog();
+			log.age = i;
+			boolean sampled = throttle.sample(log);
+			// 同一个键的结果不变
+			assertEquals(sampled, throttle.sample(log));
+			if (sampled) {
+				kept++;
+			}
+		}
+		assertTrue(kept > 4500 && kept < 5500);
+		RecorderThrottle.Spec spec = new RecorderThrottle.Spec();
+		spec.sampleRate = 0;
+		assertFalse(RecorderThrottle.of(SampledLog.class, spec).sample(new SampledLog()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownSampleKey() {
+		RecorderThrottle.Spec spec = new RecorderThrottle.Spec();
+		spec.sampleRate = 0.5;
+		spec.sampleKey = "missing";
+		RecorderThrottle.of(UserLog.class, spec);
+	}
+
+	@Test
+	public void execute() throws Exception {
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder()
+				.dataSource(new FakeJdbc()::dataSource).tablePreCreateLeadMillis(0)
+				.rateLimit(UserLog.class, 1, 10).sampleRate(UserLog2.class, 0).build();
+		recorderProxy.startServer();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(recorderProxy.executeAsync(new UserLog()));
+			futures.add(recorderProxy.executeAsync(new UserLog2()));
+		}
+		int written = 0;
+		int rateLimited = 0;
+		int sampledOut = 0;
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				written++;
+			} catch (ExecutionException e) {
+				// 被丢弃的日志以RecorderThrottledException完成
+				if (((RecorderThrottledException) e.getCause()).isSampledOut()) {
+					sampledOut++;
+				} else {
+					rateLimited++;
+				}
+			}
+		}
+		assertEquals(10, written);
+		assertEquals(90, rateLimited);
+		assertEquals(100, sampledOut);
+		try {
+			recorderProxy.executeAll(new ArrayList<>(Arrays.asList(new UserLog(), new UserLog()))).get(5,
+					TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RecorderThrottledException);
+		}
+		recorderProxy.stopServer();
+		assertEquals(10, recorderProxy.getDoneLogNum());
+		assertEquals(92, recorderProxy.getRateLimitedLogNum());
+		assertEquals(0, recorderProxy.getLostLogNum());
+		assertEquals(100, recorderProxy.getSampledOutLogNum());
+	}
+}
@@ -0,0 +1,25 @@
+package org.slingerxv.recorder;
+
+import java.util.Date;
+
+public class TypedLog extends TimeBasedLog {
+	public enum Channel {
+		APP, WEB
+	}
+
+	@Col(type = SQLType.VARCHAR, size = 64, comment = "user name")
+	public String name;
+	@Col(comment = "user level")
+	public int level;
+	@Col(type = SQLType.DOUBLE, comment = "user score")
+	public double score;
+	@Col(type = SQLType.DATETIME, comment = "login time")
+	public Date loginTime;
+	@Col(type = SQLType.VARCHAR, size = 16, comment = "login channel")
+	public Channel channel;
+
+	@Override
+	public RollType rollType() {
+		return RollType.DAY_ROLL;
+	}
+}
@@ -0,0 +1,90 @@
+package org.slingerxv.recorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.slingerxv.recorder.FakeJdbc.newLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class WriterConnectionTest {
+
+	@Test
+	public void reconnectWhenInvalid() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.connectionValidateIntervalMillis(0).build();
+		try (WriterConnection connection = new WriterConnection(recorderProxy)) {
+			Connection first = connection.get();
+			Thread.sleep(5);
+			// 空闲超过检查间隔但健康检查通过时继续使用
+			assertSame(first, connection.get());
+			assertEquals(1, jdbc.openedConnections.get());
+			jdbc.connectionValid = false;
+			Thread.sleep(5);
+			Connection second = connection.get();
+			assertNotSame(first, second);
+			assertEquals(2, jdbc.openedConnections.get());
+			assertEquals(1, jdbc.closedConnections.get());
+		}
+		assertEquals(2, jdbc.closedConnections.get());
+	}
+
+	@Test
+	public void statementCacheEviction() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.statementCacheSize(2).build();
+		try (WriterConnection connection = new WriterConnection(recorderProxy)) {
+			PreparedStatement a = connection.prepare("insert a");
+			PreparedStatement b = connection.prepare("insert b");
+			connection.prepare("insert c");
+			// 超出容量时关闭最久未使用的语句
+			assertEquals(3, jdbc.preparedStatements.get());
+			assertEquals(1, jdbc.closedStatements.get());
+			assertSame(b, connection.prepare("insert b"));
+			assertNotSame(a, connection.prepare("insert a"));
+			// b刚被使用过，淘汰的是c
+			assertEquals(4, jdbc.preparedStatements.get());
+			assertEquals(2, jdbc.closedStatements.get());
+			assertSame(b, connection.prepare("insert b"));
+		}
+		// 关闭时关闭缓存中剩余的语句
+		assertEquals(4, jdbc.closedStatements.get());
+	}
+
+	@Test
+	public void reconnectAfterBrokenConnection() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		RecorderProxy recorderProxy = new RecorderProxy.RecorderProxyBuilder().dataSource(jdbc::dataSource)
+				.insertMode(UserLog.class, InsertMode.PREPARED).tablePreCreateLeadMillis(0).build();
+		recorderProxy.startServer();
+		int opened = jdbc.openedConnections.get();
+		try (RecorderWriter writer = new RecorderWriter(recorderProxy, null)) {
+			writer.flush(batch(0), 1);
+			writer.flush(batch(1), 1);
+			// 独占连接和预编译语句在批次之间复用
+			assertEquals(opened + 1, jdbc.openedConnections.get());
+			int prepared = jdbc.preparedStatements.get();
+			// 写入中途连接断开：这一批记为丢失，连接和语句被关闭
+			jdbc.errors.add(new SQLException("Communications link failure", "08S01"));
+			writer.flush(batch(2), 1);
+			assertEquals(1, recorderProxy.getLostLogNum());
+			assertEquals(prepared, jdbc.closedStatements.get());
+			// 下一批重新获取连接并重新预编译
+			writer.flush(batch(3), 1);
+			assertEquals(opened + 2, jdbc.openedConnections.get());
+			assertEquals(prepared + 1, jdbc.preparedStatements.get());
+		}
+		assertEquals(3, recorderProxy.getDoneLogNum());
+		recorderProxy.stopServer();
+	}
+
+	private static RecorderEvent[] batch(int i) {
+		return new RecorderEvent[] { new RecorderEvent(newLog(i), "userlog20170727", null) };
+	}
+}
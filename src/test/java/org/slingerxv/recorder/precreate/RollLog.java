@@ -0,0 +1,16 @@
+package org.slingerxv.recorder.precreate;
+
+import org.slingerxv.recorder.Col;
+import org.slingerxv.recorder.RollType;
+import org.slingerxv.recorder.SQLType;
+import org.slingerxv.recorder.TimeBasedLog;
+
+public class RollLog extends TimeBasedLog {
+	@Col(type = SQLType.VARCHAR, size = 255, comment = "user name")
+	public String name;
+
+	@Override
+	public RollType rollType() {
+		return RollType.DAY_ROLL;
+	}
+}